@@ -0,0 +1,86 @@
+package frc.maths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link FastMath} against {@link Math} and the {@code %} based wrapping in {@link MathUtils}.
+ * Only times them, {@code FastMathTest} checks they stay within their documented error bounds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FastMathBenchmark {
+    private static final int kInputs = 1024;
+
+    private double[] angles;
+    private double[] xs;
+    private double[] ys;
+    private int index;
+
+    @Setup
+    public void setup() {
+        angles = new double[kInputs];
+        xs = new double[kInputs];
+        ys = new double[kInputs];
+        for(int i = 0; i < kInputs; i++) {
+            angles[i] = (i - kInputs / 2) * 0.05;
+            xs[i] = Math.cos(i * 0.37);
+            ys[i] = Math.sin(i * 0.53);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (kInputs - 1);
+        return index;
+    }
+
+    @Benchmark
+    public double mathSin() {
+        return Math.sin(angles[next()]);
+    }
+
+    @Benchmark
+    public double fastSin() {
+        return FastMath.sin(angles[next()]);
+    }
+
+    @Benchmark
+    public double mathAtan2() {
+        int i = next();
+        return Math.atan2(ys[i], xs[i]);
+    }
+
+    @Benchmark
+    public double fastAtan2() {
+        int i = next();
+        return FastMath.atan2(ys[i], xs[i]);
+    }
+
+    @Benchmark
+    public double remainderWrapPi() {
+        double angle = angles[next()];
+        double scaled = (angle + Math.PI) % (Math.PI * 2);
+        if(scaled < 0)
+            scaled += Math.PI * 2;
+        return scaled - Math.PI;
+    }
+
+    @Benchmark
+    public double fastWrapPi() {
+        return FastMath.wrapPi(angles[next()]);
+    }
+}
@@ -0,0 +1,65 @@
+package frc.maths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the angle wrapping and deadband helpers in {@link MathUtils}.
+ * Inputs cycle through a table so the branches aren't perfectly predicted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathUtilsBenchmark {
+    private static final int kInputs = 1024;
+
+    private double[] angles;
+    private Vector2d[] sticks;
+    private Vector2d band;
+    private int index;
+
+    @Setup
+    public void setup() {
+        angles = new double[kInputs];
+        sticks = new Vector2d[kInputs];
+        for(int i = 0; i < kInputs; i++) {
+            // Spread the angles over several revolutions in both directions.
+            angles[i] = (i - kInputs / 2) * 0.05;
+            sticks[i] = new Vector2d(Math.cos(i * 0.37), Math.sin(i * 0.53));
+        }
+        band = new Vector2d(0.15, 0.15);
+    }
+
+    private int next() {
+        index = (index + 1) & (kInputs - 1);
+        return index;
+    }
+
+    @Benchmark
+    public double normalizeAngleRad2() {
+        return MathUtils.normalizeAngleRad2(angles[next()]);
+    }
+
+    @Benchmark
+    public double normalizeAngleNative() {
+        return MathUtils.normalizeAngleNative(angles[next()], 5);
+    }
+
+    @Benchmark
+    public Vector2d adjustDeadband() {
+        return MathUtils.adjustDeadband(sticks[next()], band);
+    }
+}
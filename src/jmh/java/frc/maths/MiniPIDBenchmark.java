@@ -0,0 +1,92 @@
+package frc.maths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one steering PID update the way {@code DiffSwerveModuleSpark.set} runs it,
+ * with and without re-applying the gains first, and four of them as separate
+ * {@link MiniPID}s against one {@link PidBank}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MiniPIDBenchmark {
+    private static final int kInputs = 1024;
+
+    private MiniPID miniPID;
+    private MiniPID[] modulePIDs;
+    private PidBank bank;
+    private double[] bankActual;
+    private double[] bankSetpoint;
+    private double[] bankOutput;
+    private double[] actual;
+    private int index;
+
+    @Setup
+    public void setup() {
+        miniPID = new MiniPID(40, 0.5, 2);
+        miniPID.setOutputLimits(100);
+        actual = new double[kInputs];
+        for(int i = 0; i < kInputs; i++) {
+            actual[i] = 2.5 * Math.sin(i * 0.01);
+        }
+
+        modulePIDs = new MiniPID[4];
+        for(int i = 0; i < modulePIDs.length; i++) {
+            modulePIDs[i] = new MiniPID(40, 0.5, 2);
+            modulePIDs[i].setOutputLimits(100);
+        }
+        bank = new PidBank(4, new PidBank.Gains(40, 0.5, 2).withOutputLimits(-100, 100));
+        bankActual = new double[4];
+        bankSetpoint = new double[] { 1.25, 1.25, 1.25, 1.25 };
+        bankOutput = new double[4];
+    }
+
+    @Benchmark
+    public double getOutput() {
+        index = (index + 1) & (kInputs - 1);
+        return miniPID.getOutput(actual[index], 1.25);
+    }
+
+    @Benchmark
+    public double setPIDAndGetOutput() {
+        index = (index + 1) & (kInputs - 1);
+        miniPID.setPID(40, 0.5, 2);
+        return miniPID.getOutput(actual[index], 1.25);
+    }
+
+    @Benchmark
+    public double fourMiniPIDs() {
+        index = (index + 1) & (kInputs - 1);
+        double sum = 0;
+        for(int i = 0; i < modulePIDs.length; i++) {
+            modulePIDs[i].setPID(40, 0.5, 2);
+            sum += modulePIDs[i].getOutput(actual[(index + i) & (kInputs - 1)], 1.25);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] pidBank() {
+        index = (index + 1) & (kInputs - 1);
+        for(int i = 0; i < bankActual.length; i++) {
+            bankActual[i] = actual[(index + i) & (kInputs - 1)];
+        }
+        bank.calculate(bankActual, bankSetpoint, bankOutput);
+        return bankOutput;
+    }
+}
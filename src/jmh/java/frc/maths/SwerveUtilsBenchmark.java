@@ -0,0 +1,92 @@
+package frc.maths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static frc.robot.RobotMap.*;
+
+/**
+ * Measures a full kinematics pass for drivetrains with different numbers of modules.
+ * Modules are spaced evenly on the circle through the corners of the robot frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwerveUtilsBenchmark {
+    @Param({"4", "6", "8"})
+    public int moduleCount;
+
+    private Vector2d[] modulePos;
+    private double[] moduleX;
+    private double[] moduleY;
+    private double[] angles;
+    private double[] speeds;
+    private double[] chassis;
+    private SwerveKinematics kinematics;
+
+    private Vector2d translation;
+    private double heading;
+    private double rotation;
+
+    @Setup
+    public void setup() {
+        modulePos = new Vector2d[moduleCount];
+        moduleX = new double[moduleCount];
+        moduleY = new double[moduleCount];
+        angles = new double[moduleCount];
+        speeds = new double[moduleCount];
+        chassis = new double[3];
+
+        double radius = Math.hypot(kROBOT_WIDTH / 2.0, kROBOT_LENGTH / 2.0);
+        for(int i = 0; i < moduleCount; i++) {
+            double theta = Math.PI / 4 + i * 2 * Math.PI / moduleCount;
+            moduleX[i] = radius * Math.cos(theta);
+            moduleY[i] = radius * Math.sin(theta);
+            modulePos[i] = new Vector2d(moduleX[i], moduleY[i]);
+        }
+
+        kinematics = new SwerveKinematics(moduleX, moduleY);
+
+        translation = new Vector2d(0.6, -0.4);
+        heading = 0.8;
+        rotation = 0.5;
+    }
+
+    @Benchmark
+    public Vector2d[] calculateAllModules() {
+        return SwerveUtils.calculateAllModules(heading, rotation, translation, modulePos);
+    }
+
+    @Benchmark
+    public double[] calculateAllModulesPrimitive() {
+        SwerveUtils.calculateAllModules(heading, rotation, translation.getX(), translation.getY(),
+                moduleX, moduleY, angles, speeds, moduleCount);
+        return speeds;
+    }
+
+    @Benchmark
+    public double[] kinematicsToModuleStates() {
+        kinematics.toModuleStates(translation.getX(), translation.getY(), rotation / kinematics.getMaxRadius(), 1.0, angles, speeds);
+        return speeds;
+    }
+
+    @Benchmark
+    public double[] kinematicsToChassisSpeeds() {
+        kinematics.toChassisSpeedsFromStates(angles, speeds, chassis);
+        return chassis;
+    }
+}
@@ -0,0 +1,66 @@
+package frc.maths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the immutable {@link Vector2d} operations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Vector2dBenchmark {
+    private Vector2d a;
+    private Vector2d b;
+    private double angle;
+
+    @Setup
+    public void setup() {
+        a = new Vector2d(0.3, -0.7);
+        b = new Vector2d(12.0625, 12.0);
+        angle = 0.7;
+    }
+
+    @Benchmark
+    public double magnitude() {
+        return a.getMagnitude();
+    }
+
+    @Benchmark
+    public double angle() {
+        return a.getAngle();
+    }
+
+    @Benchmark
+    public Vector2d add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Vector2d rotate() {
+        return a.rotate(angle);
+    }
+
+    @Benchmark
+    public Vector2d normalize() {
+        return b.normalize(angle);
+    }
+
+    @Benchmark
+    public double dotProduct() {
+        return a.dotProduct(b);
+    }
+}
@@ -0,0 +1,108 @@
+package frc.maths.filter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one sample through each filter, and a median into a low-pass on all eight drive motor
+ * velocities, which is what filtering every encoder channel costs per steering tick.
+ * The gc profiler should show no allocation for any of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+    private static final int kInputs = 1024;
+    private static final int kChannels = 8;
+
+    private double[] input;
+    private int index;
+
+    private MovingAverageFilter movingAverage;
+    private MedianFilter median3;
+    private MedianFilter median9;
+    private ExponentialFilter exponential;
+    private BiquadFilter biquad;
+    private ScalarKalmanFilter kalman;
+    private Filter[] channels;
+
+    @Setup
+    public void setup() {
+        // Motor velocity in rpm with noise and the odd bad frame.
+        Random random = new Random(0);
+        input = new double[kInputs];
+        for(int i = 0; i < kInputs; i++) {
+            input[i] = 2000 * Math.sin(i * 0.01) + 5 * random.nextGaussian() + (random.nextInt(100) == 0 ? 5000 : 0);
+        }
+
+        movingAverage = new MovingAverageFilter(8);
+        median3 = new MedianFilter(3);
+        median9 = new MedianFilter(9);
+        exponential = ExponentialFilter.fromTimeConstant(0.02, 0.005);
+        biquad = BiquadFilter.lowPass(20, 200, BiquadFilter.kButterworthQ);
+        kalman = new ScalarKalmanFilter(1, 25);
+        channels = new Filter[kChannels];
+        for(int i = 0; i < kChannels; i++) {
+            channels[i] = new MedianFilter(3).then(BiquadFilter.lowPass(20, 200, BiquadFilter.kButterworthQ));
+        }
+    }
+
+    private double next() {
+        index = (index + 1) & (kInputs - 1);
+        return input[index];
+    }
+
+    @Benchmark
+    public double movingAverage() {
+        return movingAverage.calculate(next());
+    }
+
+    @Benchmark
+    public double median3() {
+        return median3.calculate(next());
+    }
+
+    @Benchmark
+    public double median9() {
+        return median9.calculate(next());
+    }
+
+    @Benchmark
+    public double exponential() {
+        return exponential.calculate(next());
+    }
+
+    @Benchmark
+    public double biquad() {
+        return biquad.calculate(next());
+    }
+
+    @Benchmark
+    public double kalman() {
+        return kalman.calculate(next());
+    }
+
+    @Benchmark
+    public double eightChannels() {
+        index = (index + 1) & (kInputs - 1);
+        double sum = 0;
+        for(int i = 0; i < kChannels; i++) {
+            sum += channels[i].calculate(input[(index + i) & (kInputs - 1)]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,96 @@
+package frc.maths;
+
+/**
+ * Kinematics of a differential swerve module, where two motors drive the two ring gears of a
+ * differential. Turning both motors the same way turns the module; turning them in opposite
+ * directions rolls the wheel:
+ * <pre>
+ * azimuth = (m1 + m2) / 2 / azimuthReduction                        (module revolutions)
+ * wheel   = (m1 - m2) / 2 * wheelPerRotation + coupling * azimuth   (inches)
+ * </pre>
+ * The coupling is how far the wheel rolls when the module turns with both motors together. Whether
+ * there is any depends on the gears between the ring gears and the wheel.
+ * Motor positions are in rotations and velocities in RPM, like the Spark MAX. Nothing is allocated.
+ */
+public class DifferentialModuleKinematics {
+    private final double azimuthReduction;
+    private final double wheelPerRotation;
+    private final double coupling;
+
+    /**
+     * @param azimuthReduction Motor rotations, both motors together, per revolution of the module.
+     * @param wheelPerRotation Wheel travel in inches per motor rotation, with the motors turning in opposite directions.
+     * @param coupling Wheel travel in inches per revolution of the module with both motors turning together.
+     */
+    public DifferentialModuleKinematics(double azimuthReduction, double wheelPerRotation, double coupling) {
+        if(azimuthReduction == 0 || wheelPerRotation == 0)
+            throw new IllegalArgumentException("Reductions can't be 0");
+        this.azimuthReduction = azimuthReduction;
+        this.wheelPerRotation = wheelPerRotation;
+        this.coupling = coupling;
+    }
+
+    /**
+     * Works out the motor velocities for a wheel speed and a turning rate of the module.
+     * @param wheelSpeed Wheel speed in inches per second.
+     * @param azimuthRate Module turning rate in radians per second.
+     * @param motorVelocities Filled with the velocities of motor 1 and motor 2 in RPM.
+     */
+    public void toMotorVelocities(double wheelSpeed, double azimuthRate, double[] motorVelocities) {
+        double azimuthRevs = azimuthRate / (2 * Math.PI);
+        double common = azimuthRevs * azimuthReduction;
+        double differential = (wheelSpeed - coupling * azimuthRevs) / wheelPerRotation;
+        motorVelocities[0] = (common + differential) * 60;
+        motorVelocities[1] = (common - differential) * 60;
+    }
+
+    /**
+     * @param motor1 Velocity of motor 1 in RPM.
+     * @param motor2 Velocity of motor 2 in RPM.
+     * @return Wheel speed in inches per second.
+     */
+    public double getWheelSpeed(double motor1, double motor2) {
+        return getWheelDistance(motor1, motor2) / 60;
+    }
+
+    /**
+     * @param motor1 Velocity of motor 1 in RPM.
+     * @param motor2 Velocity of motor 2 in RPM.
+     * @return Module turning rate in radians per second.
+     */
+    public double getAzimuthRate(double motor1, double motor2) {
+        return getAzimuth(motor1, motor2) / 60;
+    }
+
+    /**
+     * @param motor1 Position of motor 1 in rotations.
+     * @param motor2 Position of motor 2 in rotations.
+     * @return How far the wheel has rolled, in inches.
+     */
+    public double getWheelDistance(double motor1, double motor2) {
+        return (motor1 - motor2) / 2 * wheelPerRotation + coupling * (motor1 + motor2) / 2 / azimuthReduction;
+    }
+
+    /**
+     * @param motor1 Position of motor 1 in rotations.
+     * @param motor2 Position of motor 2 in rotations.
+     * @return Angle of the module in radians, without wrapping.
+     */
+    public double getAzimuth(double motor1, double motor2) {
+        return (motor1 + motor2) / 2 / azimuthReduction * 2 * Math.PI;
+    }
+
+    /**
+     * @return Motor rotations, both motors together, per revolution of the module.
+     */
+    public double getAzimuthReduction() {
+        return azimuthReduction;
+    }
+
+    /**
+     * @return Wheel travel in inches per motor rotation, with the motors turning in opposite directions.
+     */
+    public double getWheelPerRotation() {
+        return wheelPerRotation;
+    }
+}
@@ -0,0 +1,189 @@
+package frc.maths;
+
+/**
+ * Cheaper versions of the trig and angle wrapping functions, with bounded error.
+ * The roboRIO's Cortex-A9 runs {@link Math#sin(double)} and friends as software fdlibm, which is
+ * too slow to call several times per module at kilohertz rates. These trade the last few bits of
+ * accuracy for a short polynomial or a table lookup:
+ * <ul>
+ * <li>{@link #sin(double)}, {@link #cos(double)}: at most 1e-11 absolute error for |x| up to 1e4
+ * radians. Larger inputs fall back to {@link Math}.</li>
+ * <li>{@link #atan2(double, double)}: at most 1e-14 radians absolute error.</li>
+ * <li>The wrap functions: within a few ulps of the input of wrapping with {@code %}, without the
+ * division-heavy remainder.</li>
+ * </ul>
+ * Nothing uses these unless fast math is turned on with {@link #setEnabled(boolean)}, see
+ * {@link MathUtils#sin(double)}.
+ */
+public class FastMath {
+    private static final double kTwoPi = Math.PI * 2;
+    private static final double kInvTwoPi = 1 / kTwoPi;
+    private static final double kTwoOverPi = 2 / Math.PI;
+    private static final double kHalfPi = Math.PI / 2;
+    // pi/2 split in two so k * kHalfPiHi is exact for the quadrant counts allowed below (fdlibm's pio2_1).
+    private static final double kHalfPiHi = 1.57079632673412561417e+00;
+    private static final double kHalfPiLo = 6.07710050650619224932e-11;
+    private static final double kMaxReducible = 1e4;
+
+    // atan at 1/64 steps over [0, 1], the rest is a short series around the nearest entry.
+    private static final int kAtanSteps = 64;
+    private static final double[] kAtanTable = new double[kAtanSteps + 1];
+    static {
+        for(int i = 0; i <= kAtanSteps; i++) {
+            kAtanTable[i] = Math.atan((double) i / kAtanSteps);
+        }
+    }
+
+    private static boolean enabled;
+
+    /**
+     * Turns fast math on or off for {@link MathUtils} and everything that uses it.
+     * Set this once at startup, before any control threads are started.
+     * @param enable Whether to use the fast versions.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return Whether fast math is turned on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param x Angle in radians.
+     * @return Sine of the angle, within 1e-11.
+     */
+    public static double sin(double x) {
+        if(!(Math.abs(x) <= kMaxReducible))
+            return Math.sin(x);
+        long k = quadrant(x);
+        double r = x - k * kHalfPiHi - k * kHalfPiLo;
+        switch((int) k & 3) {
+            case 0: return sinKernel(r);
+            case 1: return cosKernel(r);
+            case 2: return -sinKernel(r);
+            default: return -cosKernel(r);
+        }
+    }
+
+    /**
+     * @param x Angle in radians.
+     * @return Cosine of the angle, within 1e-11.
+     */
+    public static double cos(double x) {
+        if(!(Math.abs(x) <= kMaxReducible))
+            return Math.cos(x);
+        long k = quadrant(x);
+        double r = x - k * kHalfPiHi - k * kHalfPiLo;
+        switch((int) k & 3) {
+            case 0: return cosKernel(r);
+            case 1: return -sinKernel(r);
+            case 2: return -cosKernel(r);
+            default: return sinKernel(r);
+        }
+    }
+
+    /**
+     * Same as {@link Math#atan2(double, double)}, within 1e-14 radians.
+     * @param y Y coordinate.
+     * @param x X coordinate.
+     * @return Angle of the point in radians, between [-pi, pi].
+     */
+    public static double atan2(double y, double x) {
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        double max = Math.max(ax, ay);
+        // Zeros, infinities and NaN keep the exact behaviour of Math.
+        if(!(max > 0 && max < Double.POSITIVE_INFINITY))
+            return Math.atan2(y, x);
+
+        double a = Math.min(ax, ay) / max;
+        int index = (int) (a * kAtanSteps + 0.5);
+        double c = (double) index / kAtanSteps;
+        // atan(a) = atan(c) + atan(d), and |d| <= 1/128 so three terms of the series are plenty.
+        double d = (a - c) / (1 + a * c);
+        double d2 = d * d;
+        double angle = kAtanTable[index] + d * (1 - d2 * (1.0 / 3 - d2 * (1.0 / 5)));
+
+        if(ay > ax)
+            angle = kHalfPi - angle;
+        if(x < 0)
+            angle = Math.PI - angle;
+        return Math.copySign(angle, y);
+    }
+
+    /**
+     * Wraps an angle into [0, 2pi).
+     * @param angle Angle in radians.
+     * @return Angle between [0, 2pi).
+     */
+    public static double wrapTwoPi(double angle) {
+        return wrap(angle, kTwoPi, kInvTwoPi);
+    }
+
+    /**
+     * Wraps an angle into [-pi, pi).
+     * @param angle Angle in radians.
+     * @return Angle between [-pi, pi).
+     */
+    public static double wrapPi(double angle) {
+        return wrap(angle + Math.PI, kTwoPi, kInvTwoPi) - Math.PI;
+    }
+
+    /**
+     * Wraps a value into [0, period).
+     * @param value Value to wrap, for example an angle in degrees or encoder ticks.
+     * @param period Length of one revolution in the same units.
+     * @return Value between [0, period).
+     */
+    public static double wrap(double value, double period) {
+        return wrap(value, period, 1 / period);
+    }
+
+    /**
+     * Wraps a value into [-period/2, period/2).
+     * @param value Value to wrap, for example an angle in degrees or encoder ticks.
+     * @param period Length of one revolution in the same units.
+     * @return Value between [-period/2, period/2).
+     */
+    public static double wrapSymmetric(double value, double period) {
+        double half = period / 2;
+        return wrap(value + half, period, 1 / period) - half;
+    }
+
+    private static double wrap(double value, double period, double inversePeriod) {
+        double revolutions = value * inversePeriod;
+        long whole = (long) revolutions;
+        // Casting truncates towards zero, step down for negatives to get the floor.
+        if(revolutions < whole)
+            whole--;
+        double wrapped = value - whole * period;
+        // Rounding can land just outside the range right at the edges.
+        if(wrapped < 0)
+            wrapped += period;
+        if(wrapped >= period)
+            wrapped -= period;
+        return wrapped;
+    }
+
+    private static long quadrant(double x) {
+        double q = x * kTwoOverPi;
+        return (long) (q + (q >= 0 ? 0.5 : -0.5));
+    }
+
+    // Taylor series on [-pi/4, pi/4]. The first dropped term is below 1e-11 there.
+    private static double sinKernel(double r) {
+        double r2 = r * r;
+        return r + r * r2 * (-1.0 / 6 + r2 * (1.0 / 120 + r2 * (-1.0 / 5040
+                + r2 * (1.0 / 362880 + r2 * (-1.0 / 39916800)))));
+    }
+
+    private static double cosKernel(double r) {
+        double r2 = r * r;
+        return 1 + r2 * (-1.0 / 2 + r2 * (1.0 / 24 + r2 * (-1.0 / 720
+                + r2 * (1.0 / 40320 + r2 * (-1.0 / 3628800 + r2 * (1.0 / 479001600))))));
+    }
+}
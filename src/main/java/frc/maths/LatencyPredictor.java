@@ -0,0 +1,100 @@
+package frc.maths;
+
+/**
+ * Predicts where a position will be at a later time, from a position and a velocity that were each
+ * measured at their own time. Acceleration is estimated from successive velocity readings, and the
+ * state is extrapolated with it as constant. Used to steer on where a module will be when a command
+ * takes effect, not where it was when the encoder was read.
+ * Extrapolation is capped at {@code maxHorizon}, so a reading that stops coming in isn't run away with.
+ * Nothing is allocated.
+ *
+ * <p>Readings are expected to keep their time while they don't change, as from
+ * {@link frc.subsystems.Motor#getEncVelocityTime()}. A changing velocity gets a new reading every
+ * {@code samplePeriod}, so once the last one is older than that the velocity has stopped changing and
+ * the acceleration is dropped, and it is never extrapolated further than that past the reading.
+ * Otherwise a module that decelerated to a stop would be predicted to keep decelerating for as long
+ * as it stays still.
+ */
+public class LatencyPredictor {
+    private final long maxHorizon;
+    private final long samplePeriod;
+
+    private double position, velocity, acceleration; // units, units/s, units/s^2
+    private long positionTime, velocityTime;
+    private boolean hasVelocity;
+
+    /**
+     * @param maxHorizon Furthest to extrapolate a reading, in microseconds.
+     * @param samplePeriod Longest a changing velocity goes without a new reading, in microseconds.
+     */
+    public LatencyPredictor(long maxHorizon, long samplePeriod) {
+        this.maxHorizon = maxHorizon;
+        this.samplePeriod = samplePeriod;
+    }
+
+    /**
+     * @param position Latest position.
+     * @param positionTime Time the position was measured, in microseconds.
+     * @param velocity Latest velocity, in position units per second.
+     * @param velocityTime Time the velocity was measured, in microseconds.
+     */
+    public void update(double position, long positionTime, double velocity, long velocityTime) {
+        this.position = position;
+        this.positionTime = positionTime;
+        // Only a new velocity reading says anything about acceleration.
+        if(hasVelocity && velocityTime > this.velocityTime) {
+            acceleration = (velocity - this.velocity) / ((velocityTime - this.velocityTime) * 1e-6);
+        }
+        if(!hasVelocity || velocityTime > this.velocityTime) {
+            this.velocity = velocity;
+            this.velocityTime = velocityTime;
+            hasVelocity = true;
+        }
+    }
+
+    /**
+     * @param now Current time, in microseconds.
+     * @param time Time to predict for, in microseconds.
+     * @return Predicted position at that time.
+     */
+    public double predictPosition(long now, long time) {
+        double a = getAcceleration(now);
+        double dt = horizon(time, positionTime);
+        // No further than a new velocity reading would have come in by.
+        long end = velocityTime + samplePeriod;
+        // Velocity at the time the position was measured.
+        double v = velocity + a * horizon(Math.min(positionTime, end), velocityTime);
+        double accelerating = Math.max(0, Math.min(horizon(end, positionTime), dt));
+        return position + v * dt + a * accelerating * (dt - accelerating / 2);
+    }
+
+    /**
+     * @param now Current time, in microseconds.
+     * @param time Time to predict for, in microseconds.
+     * @return Predicted velocity at that time, in position units per second.
+     */
+    public double predictVelocity(long now, long time) {
+        long end = velocityTime + samplePeriod;
+        return velocity + getAcceleration(now) * horizon(Math.min(time, end), velocityTime);
+    }
+
+    private double getAcceleration(long now) {
+        return now - velocityTime <= samplePeriod ? acceleration : 0;
+    }
+
+    private double horizon(long to, long from) {
+        return MathUtils.limit(to - from, maxHorizon) * 1e-6;
+    }
+
+    /**
+     * Forgets every reading.
+     */
+    public void reset() {
+        position = 0;
+        velocity = 0;
+        acceleration = 0;
+        positionTime = 0;
+        velocityTime = 0;
+        hasVelocity = false;
+    }
+}
@@ -30,12 +30,42 @@ public class MathUtils {
             return b;
     }
     
+    /**
+     * Sine, using {@link FastMath} when it's enabled.
+     * @param angle Angle in radians.
+     * @return Sine of the angle.
+     */
+    public static double sin(double angle) {
+        return FastMath.isEnabled() ? FastMath.sin(angle) : Math.sin(angle);
+    }
+
+    /**
+     * Cosine, using {@link FastMath} when it's enabled.
+     * @param angle Angle in radians.
+     * @return Cosine of the angle.
+     */
+    public static double cos(double angle) {
+        return FastMath.isEnabled() ? FastMath.cos(angle) : Math.cos(angle);
+    }
+
+    /**
+     * Angle of the point (x, y), using {@link FastMath} when it's enabled.
+     * @param y Y coordinate.
+     * @param x X coordinate.
+     * @return Angle in radians, between [-pi, pi].
+     */
+    public static double atan2(double y, double x) {
+        return FastMath.isEnabled() ? FastMath.atan2(y, x) : Math.atan2(y, x);
+    }
+
     /**
      * Normalizes an angle in the range of [0, 2pi).
      * @param angle Angle to wrap in radians.
      * @return Angle between [0, 2pi).
      */
     public static double normalizeAngleRad(double angle) {
+        if(FastMath.isEnabled())
+            return FastMath.wrapTwoPi(angle);
         double scaled = angle % (Math.PI * 2);
         if (scaled < 0)
             scaled += Math.PI * 2;
@@ -48,6 +78,8 @@ public class MathUtils {
      * @return Angle between [-pi, pi).
      */
     public static double normalizeAngleRad2(double angle) {
+        if(FastMath.isEnabled())
+            return FastMath.wrapPi(angle);
         double scaled = (angle + Math.PI) % (Math.PI * 2);
         if(scaled < 0)
             scaled += Math.PI * 2;
@@ -60,6 +92,8 @@ public class MathUtils {
      * @return Angle between [0, 360).
      */
     public static double normalizeAngleDeg(double angle) {
+        if(FastMath.isEnabled())
+            return FastMath.wrap(angle, 360);
         double scaled = angle % (360);
         if(scaled < 0)
             scaled += 360;
@@ -72,6 +106,8 @@ public class MathUtils {
      * @return Angle between [-180, 180).
      */
     public static double normalizeAngleDeg2(double angle) {
+        if(FastMath.isEnabled())
+            return FastMath.wrapSymmetric(angle, 360);
         double scaled = (angle + 180) % (360);
         if(scaled < 0)
             scaled += 360;
@@ -87,6 +123,8 @@ public class MathUtils {
      */
     //TODO: Actually test this function. It probably works though?
     public static double normalizeAngleNative(double ticks, double ticksPerRev) {
+        if(FastMath.isEnabled())
+            return FastMath.wrapSymmetric(ticks, ticksPerRev);
         double scaled = (ticks + ticksPerRev / 2) % (ticksPerRev);
         if(scaled < 0)
             scaled += ticksPerRev;
@@ -118,10 +156,24 @@ public class MathUtils {
      * @see #adjustDeadband(Vector2d, Vector2d)
      */
     public static Vector2d adjustDeadband(Joystick joystick, Vector2d band, boolean invertY, boolean invertX) {
+        return adjustDeadband(joystick.getX(), joystick.getY(), band, invertY, invertX);
+    }
+
+    /**
+     * Same as {@link #adjustDeadband(Joystick, Vector2d, boolean, boolean)}, for axis values read
+     * some other way, for example scripted ones in simulation.
+     * @param x X axis value (-1..1).
+     * @param y Y axis value (-1..1).
+     * @param band Deadband of the joystick, where it will assume the joystick is neutral.
+     * @param invertY Whether to invert the y axis.
+     * @param invertX Whether to invert the x axis.
+     * @return Mapped axis values.
+     */
+    public static Vector2d adjustDeadband(double x, double y, Vector2d band, boolean invertY, boolean invertX) {
         int xMultipier  = invertX ? 1 : -1;
         int yMultiplier = invertY ? 1 : -1;
 
-        return adjustDeadband(new Vector2d(joystick.getX() * xMultipier, joystick.getY() *yMultiplier).rotate(Math.PI/2), band);
+        return adjustDeadband(new Vector2d(x * xMultipier, y *yMultiplier).rotate(Math.PI/2), band);
     }
 
     /**
@@ -136,6 +188,16 @@ public class MathUtils {
         return new Vector2d(adjustBand(input.getX(), band.getX()), adjustBand(input.getY(), band.getY()));
     }
 
+    /**
+     * Maps a single axis so that it is zero inside the deadband and between {@code -1..1} outside of it.
+     * @param input Axis value (-1..1).
+     * @param band Deadband of the axis.
+     * @return Mapped axis value.
+     */
+    public static double adjustDeadband(double input, double band) {
+        return adjustBand(input, band);
+    }
+
     /**
      * Helper function for checking the deadband.
      * @param input Input value.
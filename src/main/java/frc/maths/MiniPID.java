@@ -36,6 +36,13 @@ public class MiniPID {
 
 	private double setpointRange=0;
 
+	private double continuousRange=0;
+
+	// Terms of the last output, kept for logging.
+	private double lastPoutput=0;
+	private double lastIoutput=0;
+	private double lastDoutput=0;
+
 	//**********************************
 	// Constructor functions
 	//**********************************
@@ -254,6 +261,11 @@ public class MiniPID {
 
 		this.setpoint=setpoint;
 
+		// For continuous inputs, use whichever copy of the setpoint is closest to the actual value
+		if(continuousRange!=0){
+			setpoint=actual+MathUtils.normalizeAngleNative(setpoint-actual,continuousRange);
+		}
+
 		// Ramp the setpoint used for calculations if user has opted to do so
 		if(setpointRange!=0){
 			setpoint=constrain(setpoint,actual-setpointRange,actual+setpointRange);
@@ -280,7 +292,11 @@ public class MiniPID {
 		// Calculate D Term
 		// Note, this is negative. This actually "slows" the system if it's doing
 		// the correct thing, and small values helps prevent output spikes and overshoot 
-		Doutput= -D*(actual-lastActual);
+		double change=actual-lastActual;
+		if(continuousRange!=0){
+			change=MathUtils.normalizeAngleNative(change,continuousRange);
+		}
+		Doutput= -D*change;
 		lastActual=actual;
 
 		// The Iterm is more complex. There's several things to factor in to make it easier to deal with.
@@ -332,6 +348,9 @@ public class MiniPID {
 		// System.out.printf("%5.2f\t%5.2f\t%5.2f\t%5.2f\n",output,Poutput, Ioutput, Doutput );
 
 		lastOutput=output;
+		lastPoutput=Poutput;
+		lastIoutput=Ioutput;
+		lastDoutput=Doutput;
 		return output;
 	}
 
@@ -358,6 +377,34 @@ public class MiniPID {
 		return getOutput(actual,setpoint);
 	}
 
+	/**
+	 * @return P term of the last calculated output.
+	 */
+	public double getLastP(){
+		return lastPoutput;
+	}
+
+	/**
+	 * @return I term of the last calculated output.
+	 */
+	public double getLastI(){
+		return lastIoutput;
+	}
+
+	/**
+	 * @return D term of the last calculated output.
+	 */
+	public double getLastD(){
+		return lastDoutput;
+	}
+
+	/**
+	 * @return Last calculated output.
+	 */
+	public double getLastOutput(){
+		return lastOutput;
+	}
+
 	/**
 	 * Resets the controller. This erases the I term buildup, and removes 
 	 * D gain on the next loop.<br>
@@ -395,6 +442,16 @@ public class MiniPID {
 		setpointRange=range;
 	}
 
+	/**
+	 * Treat the input as continuous, wrapping around every {@code range} units, like an angle.<br>
+	 * The error is then always taken the short way round, so a setpoint just past the wrap point
+	 * doesn't send the system the long way. The sensor doesn't have to be wrapped itself.
+	 * @param range Length of one revolution in sensor units, such as 360 for degrees. 0 disables.
+	 */
+	public void setContinuous(double range){
+		continuousRange=range;
+	}
+
 	/**
      * Set a filter on the output to reduce sharp oscillations. <br>
 	 * 0.1 is likely a sane starting value. Larger values use historical data
@@ -0,0 +1,348 @@
+package frc.maths;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A group of PID controllers sharing one set of gains, for example the steering of every module.
+ * Behaves like one {@link MiniPID} per controller (same output ramp, output filter, max I output,
+ * setpoint range, direction and continuous input), but keeps the state of all of them in
+ * parallel arrays and updates them in one loop.
+ *
+ * <p>Gains live in an immutable {@link Gains} snapshot. Any thread can publish a new one with
+ * {@link #setGains(Gains)}; the control thread picks it up on its next update with a single
+ * volatile read, so it never sees half-applied gains and never has to take a lock. Only one
+ * thread should run the controllers.
+ */
+public class PidBank {
+
+    /**
+     * Immutable set of gains and limits. The {@code with} methods return a changed copy.
+     * Signs of the gains are fixed up to match the direction, like {@link MiniPID} does.
+     */
+    public static final class Gains {
+        public final double p, i, d, f;
+        public final double maxIOutput;
+        public final double minOutput, maxOutput;
+        public final double outputRampRate;
+        public final double outputFilter;
+        public final double setpointRange;
+        public final double continuousRange;
+        public final boolean reversed;
+        // Largest error sum that keeps the I term within maxIOutput.
+        final double maxError;
+
+        /**
+         * @param p Proportional gain.
+         * @param i Integral gain.
+         * @param d Derivative gain.
+         */
+        public Gains(double p, double i, double d) {
+            this(p, i, d, 0, 0, 0, 0, 0, 0, 0, 0, false);
+        }
+
+        private Gains(double p, double i, double d, double f, double maxIOutput, double minOutput, double maxOutput,
+                double outputRampRate, double outputFilter, double setpointRange, double continuousRange, boolean reversed) {
+            double sign = reversed ? -1 : 1;
+            this.p = sign * Math.abs(p);
+            this.i = sign * Math.abs(i);
+            this.d = sign * Math.abs(d);
+            this.f = sign * Math.abs(f);
+            this.maxIOutput = maxIOutput;
+            this.minOutput = minOutput;
+            this.maxOutput = maxOutput;
+            this.outputRampRate = outputRampRate;
+            this.outputFilter = outputFilter;
+            this.setpointRange = setpointRange;
+            this.continuousRange = continuousRange;
+            this.reversed = reversed;
+            maxError = this.i != 0 ? maxIOutput / this.i : 0;
+        }
+
+        /**
+         * @see MiniPID#setPID(double, double, double)
+         */
+        public Gains withPID(double p, double i, double d) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * @see MiniPID#setF(double)
+         */
+        public Gains withF(double f) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * @see MiniPID#setMaxIOutput(double)
+         */
+        public Gains withMaxIOutput(double maximum) {
+            return new Gains(p, i, d, f, maximum, minOutput, maxOutput, outputRampRate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * Also caps the max I output to the output swing, like {@link MiniPID#setOutputLimits(double, double)}.
+         * Ignored if {@code maximum < minimum}.
+         */
+        public Gains withOutputLimits(double minimum, double maximum) {
+            if(maximum < minimum)
+                return this;
+            double iOutput = (maxIOutput == 0 || maxIOutput > maximum - minimum) ? maximum - minimum : maxIOutput;
+            return new Gains(p, i, d, f, iOutput, minimum, maximum, outputRampRate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * @see MiniPID#setOutputRampRate(double)
+         */
+        public Gains withOutputRampRate(double rate) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, rate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * Ignored unless {@code strength} is 0 or strictly between 0 and 1.
+         * @see MiniPID#setOutputFilter(double)
+         */
+        public Gains withOutputFilter(double strength) {
+            if(strength != 0 && !(strength > 0 && strength < 1))
+                return this;
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, strength, setpointRange, continuousRange, reversed);
+        }
+
+        /**
+         * @see MiniPID#setSetpointRange(double)
+         */
+        public Gains withSetpointRange(double range) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, outputFilter, range, continuousRange, reversed);
+        }
+
+        /**
+         * @see MiniPID#setContinuous(double)
+         */
+        public Gains withContinuous(double range) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, outputFilter, setpointRange, range, reversed);
+        }
+
+        /**
+         * @see MiniPID#setDirection(boolean)
+         */
+        public Gains withDirection(boolean reversed) {
+            return new Gains(p, i, d, f, maxIOutput, minOutput, maxOutput, outputRampRate, outputFilter, setpointRange, continuousRange, reversed);
+        }
+    }
+
+    private final int size;
+    private final AtomicReference<Gains> published;
+    // Gains the controller state was last updated with, only touched by the control thread.
+    private Gains active;
+
+    private final double[] errorSum;
+    private final double[] lastActual;
+    private final double[] lastOutput;
+    private final double[] lastP;
+    private final double[] lastI;
+    private final double[] lastD;
+    private final boolean[] firstRun;
+
+    /**
+     * @param size Number of controllers.
+     * @param gains Gains to start with.
+     */
+    public PidBank(int size, Gains gains) {
+        this.size = size;
+        published = new AtomicReference<>(gains);
+        active = gains;
+        errorSum = new double[size];
+        lastActual = new double[size];
+        lastOutput = new double[size];
+        lastP = new double[size];
+        lastI = new double[size];
+        lastD = new double[size];
+        firstRun = new boolean[size];
+        reset();
+    }
+
+    /**
+     * Publishes new gains. Safe to call from any thread; they take effect on the next update.
+     * @param gains New gains.
+     */
+    public void setGains(Gains gains) {
+        published.set(gains);
+    }
+
+    /**
+     * Publishes a change to the latest gains, for writers that only change some of them. Writers that
+     * change different gains at the same time don't undo each other, and it never takes a lock.
+     * @param change Works out the new gains from the latest ones. May be called more than once.
+     */
+    public void updateGains(UnaryOperator<Gains> change) {
+        Gains current, next;
+        do {
+            current = published.get();
+            next = change.apply(current);
+        } while(!published.compareAndSet(current, next));
+    }
+
+    /**
+     * @return The latest published gains.
+     */
+    public Gains getGains() {
+        return published.get();
+    }
+
+    /**
+     * Updates every controller.
+     * @param actual Measured value of each controller.
+     * @param setpoint Setpoint of each controller.
+     * @param output Output buffer for each controller.
+     */
+    public void calculate(double[] actual, double[] setpoint, double[] output) {
+        Gains gains = refreshGains();
+        for(int i = 0; i < size; i++) {
+            output[i] = calculate(gains, i, actual[i], setpoint[i]);
+        }
+    }
+
+    /**
+     * Updates a single controller.
+     * @param index Controller to update.
+     * @param actual Measured value.
+     * @param setpoint Setpoint.
+     * @return Output of the controller.
+     */
+    public double calculate(int index, double actual, double setpoint) {
+        return calculate(refreshGains(), index, actual, setpoint);
+    }
+
+    private Gains refreshGains() {
+        Gains gains = published.get();
+        if(gains != active) {
+            // Rescale the error sums so the I term doesn't jump, like MiniPID.setI().
+            if(gains.i != active.i && gains.i != 0 && active.i != 0) {
+                double scale = active.i / gains.i;
+                for(int i = 0; i < size; i++) {
+                    errorSum[i] *= scale;
+                }
+            }
+            active = gains;
+        }
+        return gains;
+    }
+
+    private double calculate(Gains g, int i, double actual, double setpoint) {
+        // Same steps as MiniPID.getOutput(), see there for the reasoning.
+        if(g.continuousRange != 0)
+            setpoint = actual + MathUtils.normalizeAngleNative(setpoint - actual, g.continuousRange);
+        if(g.setpointRange != 0)
+            setpoint = constrain(setpoint, actual - g.setpointRange, actual + g.setpointRange);
+
+        double error = setpoint - actual;
+        double fOutput = g.f * setpoint;
+        double pOutput = g.p * error;
+
+        if(firstRun[i]) {
+            lastActual[i] = actual;
+            lastOutput[i] = pOutput + fOutput;
+            firstRun[i] = false;
+        }
+
+        double change = actual - lastActual[i];
+        if(g.continuousRange != 0)
+            change = MathUtils.normalizeAngleNative(change, g.continuousRange);
+        double dOutput = -g.d * change;
+        lastActual[i] = actual;
+
+        double iOutput = g.i * errorSum[i];
+        if(g.maxIOutput != 0)
+            iOutput = constrain(iOutput, -g.maxIOutput, g.maxIOutput);
+
+        double output = fOutput + pOutput + iOutput + dOutput;
+        double previous = lastOutput[i];
+
+        if(g.minOutput != g.maxOutput && !bounded(output, g.minOutput, g.maxOutput))
+            errorSum[i] = error;
+        else if(g.outputRampRate != 0 && !bounded(output, previous - g.outputRampRate, previous + g.outputRampRate))
+            errorSum[i] = error;
+        else if(g.maxIOutput != 0)
+            errorSum[i] = constrain(errorSum[i] + error, -Math.abs(g.maxError), Math.abs(g.maxError));
+        else
+            errorSum[i] += error;
+
+        if(g.outputRampRate != 0)
+            output = constrain(output, previous - g.outputRampRate, previous + g.outputRampRate);
+        if(g.minOutput != g.maxOutput)
+            output = constrain(output, g.minOutput, g.maxOutput);
+        if(g.outputFilter != 0)
+            output = previous * g.outputFilter + output * (1 - g.outputFilter);
+
+        lastOutput[i] = output;
+        lastP[i] = pOutput;
+        lastI[i] = iOutput;
+        lastD[i] = dOutput;
+        return output;
+    }
+
+    /**
+     * Resets every controller, clearing the I term and skipping the D term on the next update.
+     */
+    public void reset() {
+        for(int i = 0; i < size; i++) {
+            reset(i);
+        }
+    }
+
+    /**
+     * Resets one controller.
+     * @param index Controller to reset.
+     */
+    public void reset(int index) {
+        firstRun[index] = true;
+        errorSum[index] = 0;
+    }
+
+    /**
+     * @return Number of controllers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return P term of the last output of a controller.
+     */
+    public double getLastP(int index) {
+        return lastP[index];
+    }
+
+    /**
+     * @return I term of the last output of a controller.
+     */
+    public double getLastI(int index) {
+        return lastI[index];
+    }
+
+    /**
+     * @return D term of the last output of a controller.
+     */
+    public double getLastD(int index) {
+        return lastD[index];
+    }
+
+    /**
+     * @return Last output of a controller.
+     */
+    public double getLastOutput(int index) {
+        return lastOutput[index];
+    }
+
+    private static double constrain(double value, double min, double max) {
+        if(value > max)
+            return max;
+        if(value < min)
+            return min;
+        return value;
+    }
+
+    private static boolean bounded(double value, double min, double max) {
+        return min < value && value < max;
+    }
+}
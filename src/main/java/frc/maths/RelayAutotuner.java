@@ -0,0 +1,178 @@
+package frc.maths;
+
+/**
+ * Relay feedback experiment (Astrom-Hagglund) for finding PID gains.
+ * Instead of closing the loop with a PID, the output is switched between {@code bias + amplitude}
+ * and {@code bias - amplitude} whenever the measurement crosses the setpoint. Almost any plant
+ * settles into a steady oscillation under this, and from its amplitude and period we get the
+ * ultimate gain Ku and ultimate period Pu, the same numbers the Ziegler-Nichols rules start from,
+ * without having to push the real loop to the edge of stability.
+ *
+ * <p>Call {@link #update(double, long)} once per loop until {@link #isDone()}. Nothing is allocated.
+ */
+public class RelayAutotuner {
+
+    /**
+     * Rules for turning Ku and Pu into gains: Kp = kp * Ku, Ti = ti * Pu, Td = td * Pu.
+     */
+    public enum Rule {
+        // Classic Ziegler-Nichols. Fast, but expect around 25% overshoot.
+        ZIEGLER_NICHOLS(0.6, 0.5, 0.125),
+        SOME_OVERSHOOT(0.33, 0.5, 0.33),
+        NO_OVERSHOOT(0.2, 0.5, 0.33);
+
+        public final double kp, ti, td;
+
+        Rule(double kp, double ti, double td) {
+            this.kp = kp;
+            this.ti = ti;
+            this.td = td;
+        }
+    }
+
+    private final double setpoint;
+    private final double bias;
+    private final double amplitude;
+    private final double hysteresis;
+    private final int cycles;
+    private final long timeoutMicros;
+
+    private long startTime = -1;
+    private boolean high = true;
+    private boolean done;
+    private boolean failed;
+
+    // Current half cycle.
+    private double cycleMax = Double.NEGATIVE_INFINITY;
+    private double cycleMin = Double.POSITIVE_INFINITY;
+    private long lastRise = -1;
+    private int risesSeen;
+
+    // Sums over the measured cycles.
+    private int measured;
+    private double amplitudeSum;
+    private double periodSum;
+    private double measurementSum;
+    private long measurementCount;
+
+    /**
+     * @param setpoint Value to oscillate around.
+     * @param bias Output that roughly holds the setpoint, 0 for a position loop.
+     * @param amplitude How far the relay swings the output either side of the bias.
+     * @param hysteresis How far past the setpoint the measurement has to go before switching, to ride over noise.
+     * @param cycles Number of oscillations to average over, after the first one is skipped.
+     * @param timeoutSeconds Give up if the experiment takes longer than this.
+     */
+    public RelayAutotuner(double setpoint, double bias, double amplitude, double hysteresis, int cycles, double timeoutSeconds) {
+        this.setpoint = setpoint;
+        this.bias = bias;
+        this.amplitude = amplitude;
+        this.hysteresis = hysteresis;
+        this.cycles = cycles;
+        this.timeoutMicros = (long) (timeoutSeconds * 1e6);
+    }
+
+    /**
+     * Runs one step of the experiment.
+     * @param measurement Current value of the process variable.
+     * @param timeMicros Current time in microseconds.
+     * @return Output to apply, or {@code bias} once the experiment is over.
+     */
+    public double update(double measurement, long timeMicros) {
+        if(done)
+            return bias;
+        if(startTime < 0)
+            startTime = timeMicros;
+        if(timeMicros - startTime > timeoutMicros) {
+            done = true;
+            failed = true;
+            return bias;
+        }
+
+        cycleMax = Math.max(cycleMax, measurement);
+        cycleMin = Math.min(cycleMin, measurement);
+        if(risesSeen >= 2) {
+            measurementSum += measurement;
+            measurementCount++;
+        }
+
+        double error = setpoint - measurement;
+        if(high && error < -hysteresis) {
+            high = false;
+        } else if(!high && error > hysteresis) {
+            high = true;
+            // A full cycle ends every time the output switches back up.
+            if(risesSeen >= 2) {
+                amplitudeSum += (cycleMax - cycleMin) / 2;
+                periodSum += (timeMicros - lastRise) * 1e-6;
+                measured++;
+            }
+            // The first cycle starts from wherever the plant was, so it's skipped.
+            risesSeen++;
+            lastRise = timeMicros;
+            cycleMax = measurement;
+            cycleMin = measurement;
+            if(measured >= cycles)
+                done = true;
+        }
+        return done ? bias : bias + (high ? amplitude : -amplitude);
+    }
+
+    /**
+     * @return Whether the experiment is over, either finished or timed out.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return Whether the experiment timed out before enough oscillations were seen.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Ultimate gain, from the describing function of a relay with hysteresis: 4d / (pi sqrt(a^2 - h^2)).
+     * @return Ku in output units per measurement unit, or NaN if nothing was measured.
+     */
+    public double getUltimateGain() {
+        if(measured == 0)
+            return Double.NaN;
+        double a = amplitudeSum / measured;
+        return 4 * amplitude / (Math.PI * Math.sqrt(Math.max(a * a - hysteresis * hysteresis, 1e-12)));
+    }
+
+    /**
+     * @return Ultimate period Pu in seconds, or NaN if nothing was measured.
+     */
+    public double getUltimatePeriod() {
+        return measured == 0 ? Double.NaN : periodSum / measured;
+    }
+
+    /**
+     * @return Mean measurement over the measured cycles. For a velocity loop, {@code bias} divided by
+     *         this is a feedforward estimate.
+     */
+    public double getMeanMeasurement() {
+        return measurementCount == 0 ? Double.NaN : measurementSum / measurementCount;
+    }
+
+    /**
+     * Works out gains for a PID that runs once per {@code loopPeriod}, such as {@link MiniPID}
+     * or the Spark MAX, whose I and D terms are per loop rather than per second.
+     * @param rule Tuning rule.
+     * @param loopPeriod Period of the loop the gains are for, in seconds.
+     * @param gains Output buffer for {@code {p, i, d}}.
+     */
+    public void proposeGains(Rule rule, double loopPeriod, double[] gains) {
+        double ku = getUltimateGain();
+        double pu = getUltimatePeriod();
+        double p = rule.kp * ku;
+        double ti = rule.ti * pu;
+        double td = rule.td * pu;
+        gains[0] = p;
+        gains[1] = p / ti * loopPeriod;
+        gains[2] = p * td / loopPeriod;
+    }
+}
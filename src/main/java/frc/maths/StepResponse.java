@@ -0,0 +1,79 @@
+package frc.maths;
+
+/**
+ * Measures a step response as it comes in: rise time, overshoot and settling time.
+ * Feed it samples from the moment the setpoint steps. Nothing is allocated.
+ */
+public class StepResponse {
+    private final double initial;
+    private final double target;
+    private final double settleBand;
+
+    private long startTime = -1;
+    private long lastTime;
+    private long riseStart = -1;
+    private long riseEnd = -1;
+    private long lastOutsideBand = -1;
+    private double peakProgress;
+
+    /**
+     * @param initial Value before the step.
+     * @param target Setpoint after the step.
+     * @param settleBand Settled once within this fraction of the step size, usually 0.02.
+     */
+    public StepResponse(double initial, double target, double settleBand) {
+        this.initial = initial;
+        this.target = target;
+        this.settleBand = settleBand;
+    }
+
+    /**
+     * @param timeMicros Time of the sample in microseconds.
+     * @param value Measured value.
+     */
+    public void add(long timeMicros, double value) {
+        if(startTime < 0)
+            startTime = timeMicros;
+        lastTime = timeMicros;
+
+        double step = target - initial;
+        // Progress from 0 at the initial value to 1 at the target, whichever way the step goes.
+        double progress = step == 0 ? 1 : (value - initial) / step;
+        if(riseStart < 0 && progress >= 0.1)
+            riseStart = timeMicros;
+        if(riseEnd < 0 && progress >= 0.9)
+            riseEnd = timeMicros;
+        if(progress > peakProgress)
+            peakProgress = progress;
+        if(Math.abs(progress - 1) > settleBand)
+            lastOutsideBand = timeMicros;
+    }
+
+    /**
+     * @return Time from 10% to 90% of the step in seconds, or NaN if it never got there.
+     */
+    public double getRiseTime() {
+        if(riseStart < 0 || riseEnd < 0)
+            return Double.NaN;
+        return (riseEnd - riseStart) * 1e-6;
+    }
+
+    /**
+     * @return How far past the target it went, as a fraction of the step size. 0 if it never passed it.
+     */
+    public double getOvershoot() {
+        return Math.max(0, peakProgress - 1);
+    }
+
+    /**
+     * @return Time from the step until it stayed within the band, in seconds, or NaN if it was
+     *         still outside at the last sample.
+     */
+    public double getSettlingTime() {
+        if(startTime < 0 || lastOutsideBand == lastTime)
+            return Double.NaN;
+        if(lastOutsideBand < 0)
+            return 0;
+        return (lastOutsideBand - startTime) * 1e-6;
+    }
+}
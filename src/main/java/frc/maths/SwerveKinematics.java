@@ -0,0 +1,208 @@
+package frc.maths;
+
+/**
+ * Swerve kinematics for any number of modules, in matrix form.
+ * Each module's velocity is the chassis velocity plus the rotation about the center of rotation,
+ * which stacks up into a 2N x 3 matrix taking chassis speeds (vx, vy, omega) to module velocities:
+ * <pre>
+ * | vx_i |   | 1  0  -(y_i - cy) |   | vx    |
+ * | vy_i | = | 0  1   (x_i - cx) | * | vy    |
+ *                                    | omega |
+ * </pre>
+ * The matrix and its least-squares pseudo-inverse only depend on the module positions and the
+ * center of rotation, so they are worked out once up front. After that both directions are a
+ * single matrix-vector multiply into buffers owned by the caller, so nothing is allocated per tick.
+ * Not thread safe, use one instance per thread.
+ */
+public class SwerveKinematics {
+    private final int moduleCount;
+    private final double[] moduleX;
+    private final double[] moduleY;
+
+    // Offsets of the modules from the center of rotation.
+    private final double[] offsetX;
+    private final double[] offsetY;
+    private double maxRadius;
+
+    // Pseudo-inverse (A^T A)^-1 A^T, 3 rows of 2N, row major.
+    private final double[] pseudoInverse;
+
+    /**
+     * Creates the kinematics with the center of rotation at the origin.
+     * @param moduleX X positions of the modules.
+     * @param moduleY Y positions of the modules.
+     */
+    public SwerveKinematics(double[] moduleX, double[] moduleY) {
+        if(moduleX.length != moduleY.length || moduleX.length < 2)
+            throw new IllegalArgumentException("Need at least two modules with both coordinates");
+        moduleCount = moduleX.length;
+        this.moduleX = moduleX.clone();
+        this.moduleY = moduleY.clone();
+        offsetX = new double[moduleCount];
+        offsetY = new double[moduleCount];
+        pseudoInverse = new double[3 * 2 * moduleCount];
+        setCenterOfRotation(0, 0);
+    }
+
+    /**
+     * Moves the point the robot rotates about, for example to pivot around one corner.
+     * Recomputes the matrices, so don't call it every tick unless the center actually moves.
+     * @param x X position of the center of rotation, in the same frame as the modules.
+     * @param y Y position of the center of rotation.
+     */
+    public void setCenterOfRotation(double x, double y) {
+        // A^T A works out to [[N, 0, -sum dy], [0, N, sum dx], [-sum dy, sum dx, sum (dx^2 + dy^2)]].
+        double sumX = 0, sumY = 0, sumSquares = 0;
+        maxRadius = 0;
+        for(int i = 0; i < moduleCount; i++) {
+            offsetX[i] = moduleX[i] - x;
+            offsetY[i] = moduleY[i] - y;
+            sumX += offsetX[i];
+            sumY += offsetY[i];
+            double squared = offsetX[i] * offsetX[i] + offsetY[i] * offsetY[i];
+            sumSquares += squared;
+            maxRadius = Math.max(maxRadius, Math.sqrt(squared));
+        }
+
+        double n = moduleCount;
+        double a = n, c = -sumY;
+        double e = n, f = sumX;
+        double i = sumSquares;
+        // Inverse of the symmetric matrix [[a, 0, c], [0, e, f], [c, f, i]] by cofactors.
+        double det = a * (e * i - f * f) + c * (-e * c);
+        if(Math.abs(det) < 1e-12)
+            throw new IllegalArgumentException("Modules can't tell rotation from translation around (" + x + ", " + y + ")");
+        double m00 = (e * i - f * f) / det;
+        double m01 = (c * f) / det;
+        double m02 = (-c * e) / det;
+        double m11 = (a * i - c * c) / det;
+        double m12 = (-a * f) / det;
+        double m22 = (a * e) / det;
+
+        // Multiply by A^T, whose columns are (1, 0, -dy) and (0, 1, dx) for each module.
+        int columns = 2 * moduleCount;
+        for(int k = 0; k < moduleCount; k++) {
+            double dx = offsetX[k], dy = offsetY[k];
+            pseudoInverse[2 * k] = m00 - m02 * dy;
+            pseudoInverse[2 * k + 1] = m01 + m02 * dx;
+            pseudoInverse[columns + 2 * k] = m01 - m12 * dy;
+            pseudoInverse[columns + 2 * k + 1] = m11 + m12 * dx;
+            pseudoInverse[2 * columns + 2 * k] = m02 - m22 * dy;
+            pseudoInverse[2 * columns + 2 * k + 1] = m12 + m22 * dx;
+        }
+    }
+
+    /**
+     * Inverse kinematics: works out the velocity of every module for the given chassis speeds.
+     * @param vx Chassis velocity along x.
+     * @param vy Chassis velocity along y.
+     * @param omega Angular velocity in radians per unit of time, counter-clockwise positive.
+     * @param moduleVx Output buffer for the x velocity of each module.
+     * @param moduleVy Output buffer for the y velocity of each module.
+     */
+    public void toModuleVelocities(double vx, double vy, double omega, double[] moduleVx, double[] moduleVy) {
+        for(int i = 0; i < moduleCount; i++) {
+            moduleVx[i] = vx - omega * offsetY[i];
+            moduleVy[i] = vy + omega * offsetX[i];
+        }
+    }
+
+    /**
+     * Inverse kinematics as wheel angles and speeds, scaled down so no wheel goes over {@code maxSpeed}.
+     * @param vx Chassis velocity along x.
+     * @param vy Chassis velocity along y.
+     * @param omega Angular velocity in radians per unit of time, counter-clockwise positive.
+     * @param maxSpeed Fastest a wheel can go. If any wheel would go faster, all of them are scaled down together.
+     * @param angles Output buffer for the wheel angles in radians, between [0, 2pi).
+     * @param speeds Output buffer for the wheel speeds, never negative.
+     */
+    public void toModuleStates(double vx, double vy, double omega, double maxSpeed, double[] angles, double[] speeds) {
+        double fastest = 0;
+        for(int i = 0; i < moduleCount; i++) {
+            double moduleVx = vx - omega * offsetY[i];
+            double moduleVy = vy + omega * offsetX[i];
+            double speed = Math.sqrt(moduleVx * moduleVx + moduleVy * moduleVy);
+            angles[i] = MathUtils.normalizeAngleRad(MathUtils.atan2(moduleVy, moduleVx));
+            speeds[i] = speed;
+            if(speed > fastest)
+                fastest = speed;
+        }
+
+        if(fastest > maxSpeed) {
+            double scale = maxSpeed / fastest;
+            for(int i = 0; i < moduleCount; i++) {
+                speeds[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Forward kinematics: the chassis speeds that best fit the measured module velocities, in the
+     * least-squares sense. Wheels that slip or disagree are averaged out instead of trusted.
+     * @param moduleVx Measured x velocity of each module.
+     * @param moduleVy Measured y velocity of each module.
+     * @param chassis Output buffer for vx, vy and omega.
+     */
+    public void toChassisSpeeds(double[] moduleVx, double[] moduleVy, double[] chassis) {
+        int columns = 2 * moduleCount;
+        for(int row = 0; row < 3; row++) {
+            int base = row * columns;
+            double sum = 0;
+            for(int i = 0; i < moduleCount; i++) {
+                sum += pseudoInverse[base + 2 * i] * moduleVx[i] + pseudoInverse[base + 2 * i + 1] * moduleVy[i];
+            }
+            chassis[row] = sum;
+        }
+    }
+
+    /**
+     * Forward kinematics from measured wheel angles and speeds.
+     * @param angles Measured wheel angles in radians.
+     * @param speeds Measured wheel speeds.
+     * @param chassis Output buffer for vx, vy and omega.
+     */
+    public void toChassisSpeedsFromStates(double[] angles, double[] speeds, double[] chassis) {
+        int columns = 2 * moduleCount;
+        double vx = 0, vy = 0, omega = 0;
+        for(int i = 0; i < moduleCount; i++) {
+            double moduleVx = speeds[i] * MathUtils.cos(angles[i]);
+            double moduleVy = speeds[i] * MathUtils.sin(angles[i]);
+            vx += pseudoInverse[2 * i] * moduleVx + pseudoInverse[2 * i + 1] * moduleVy;
+            vy += pseudoInverse[columns + 2 * i] * moduleVx + pseudoInverse[columns + 2 * i + 1] * moduleVy;
+            omega += pseudoInverse[2 * columns + 2 * i] * moduleVx + pseudoInverse[2 * columns + 2 * i + 1] * moduleVy;
+        }
+        chassis[0] = vx;
+        chassis[1] = vy;
+        chassis[2] = omega;
+    }
+
+    /**
+     * @return Distance from the center of rotation to the furthest module.
+     */
+    public double getMaxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * @param i Index of the module.
+     * @return X offset of the module from the center of rotation.
+     */
+    public double getOffsetX(int i) {
+        return offsetX[i];
+    }
+
+    /**
+     * @param i Index of the module.
+     * @return Y offset of the module from the center of rotation.
+     */
+    public double getOffsetY(int i) {
+        return offsetY[i];
+    }
+
+    /**
+     * @return Number of modules.
+     */
+    public int getModuleCount() {
+        return moduleCount;
+    }
+}
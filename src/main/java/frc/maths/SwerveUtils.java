@@ -55,6 +55,29 @@ public class SwerveUtils {
         return driveVec;
     }
 
+    /**
+     * Picks the quickest way for a module to reach a wheel state. Turning the module to the opposite
+     * angle and running the wheel backwards is the same state, so the target never needs to be more
+     * than 90 degrees from the current angle.
+     * @param targetAngle Wanted wheel angle in radians.
+     * @param speed Wanted wheel speed.
+     * @param currentAngle Current wheel angle in radians. Doesn't have to be wrapped.
+     * @param result Output buffer: the angle to steer to, within pi/2 of {@code currentAngle}
+     *               (so not wrapped either), and the speed, negated if the wheel was flipped.
+     */
+    public static void optimizeModuleState(double targetAngle, double speed, double currentAngle, double[] result) {
+        double delta = MathUtils.normalizeAngleRad2(targetAngle - currentAngle);
+        if(delta > Math.PI / 2) {
+            delta -= Math.PI;
+            speed = -speed;
+        } else if(delta < -Math.PI / 2) {
+            delta += Math.PI;
+            speed = -speed;
+        }
+        result[0] = currentAngle + delta;
+        result[1] = speed;
+    }
+
     /**
      * Calculates and normalizes several modules in one line.
      * @param gyroHeading Robot heading.
@@ -72,4 +95,53 @@ public class SwerveUtils {
         Vector2d[] driveVecsNormalized = batchNormalize(1.0, driveVecs);
         return driveVecsNormalized;
     }
+
+    /**
+     * Allocation-free version of {@link #calculateAllModules(double, double, Vector2d, Vector2d...)}.
+     * Module positions and results are passed as primitive arrays owned by the caller, and the
+     * heading rotation is only computed once for all modules, so this is safe to call every tick.
+     * Results are normalized the same way as {@link #batchNormalize(double, Vector2d...)} with a limit of 1.
+     * @param gyroHeading Robot heading.
+     * @param rotationValue "Power" of rotation (-1..1).
+     * @param translationX X component of the field-centered translation.
+     * @param translationY Y component of the field-centered translation.
+     * @param moduleX X positions of the modules relative to the rotation center.
+     * @param moduleY Y positions of the modules relative to the rotation center.
+     * @param angles Output buffer for the wheel angles in radians, between [0, 2pi).
+     * @param speeds Output buffer for the wheel speeds (0..1).
+     * @param moduleCount Number of modules to calculate. Every buffer must be at least this long.
+     */
+    public static void calculateAllModules(double gyroHeading, double rotationValue, double translationX, double translationY,
+            double[] moduleX, double[] moduleY, double[] angles, double[] speeds, int moduleCount) {
+        // Rotate the translation vector once, it is the same for every module.
+        double cos = MathUtils.cos(gyroHeading);
+        double sin = MathUtils.sin(gyroHeading);
+        double transX = translationX * cos - translationY * sin;
+        double transY = translationX * sin + translationY * cos;
+
+        double maxMagnitude = 0;
+        for(int i = 0; i < moduleCount; i++) {
+            // Rotation vector is the module position scaled to rotationValue and turned by pi/2,
+            // which is just (-y, x) * rotationValue / |position|.
+            double length = Math.sqrt(moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i]);
+            double scale = length == 0 ? 0 : rotationValue / length;
+            double driveX = transX - moduleY[i] * scale;
+            double driveY = transY + moduleX[i] * scale;
+
+            double magnitude = Math.sqrt(driveX * driveX + driveY * driveY);
+            if(magnitude > maxMagnitude)
+                maxMagnitude = magnitude;
+
+            angles[i] = MathUtils.normalizeAngleRad(MathUtils.atan2(driveY, driveX));
+            speeds[i] = magnitude;
+        }
+
+        // Scale everything down proportionately if the fastest wheel is over the limit.
+        if(maxMagnitude > 1.0) {
+            double scale = 1.0 / maxMagnitude;
+            for(int i = 0; i < moduleCount; i++) {
+                speeds[i] *= scale;
+            }
+        }
+    }
 }
\ No newline at end of file
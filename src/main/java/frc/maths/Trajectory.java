@@ -0,0 +1,142 @@
+package frc.maths;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A time-parameterized path for a holonomic drive, stored as parallel columns of samples.
+ * Positions are field-relative, velocities are field-relative too, and headings are in radians.
+ * Made by {@link TrajectoryGenerator}. Immutable once built; sampling doesn't allocate.
+ *
+ * <p>The columns are buffers rather than arrays so a trajectory can also read straight out of a
+ * memory-mapped file, see {@link frc.util.TrajectoryCache}.
+ */
+public class Trajectory {
+    private final DoubleBuffer time;
+    private final DoubleBuffer x;
+    private final DoubleBuffer y;
+    private final DoubleBuffer heading;
+    private final DoubleBuffer vx;
+    private final DoubleBuffer vy;
+    private final DoubleBuffer omega;
+    private final int size;
+
+    /**
+     * Wraps sample arrays without copying them. All arrays must have the same length and the
+     * times must be increasing.
+     */
+    public Trajectory(double[] time, double[] x, double[] y, double[] heading, double[] vx, double[] vy, double[] omega) {
+        this(DoubleBuffer.wrap(time), DoubleBuffer.wrap(x), DoubleBuffer.wrap(y), DoubleBuffer.wrap(heading),
+                DoubleBuffer.wrap(vx), DoubleBuffer.wrap(vy), DoubleBuffer.wrap(omega));
+    }
+
+    /**
+     * Wraps sample columns without copying them. Samples are read with absolute gets from index 0,
+     * so the buffers' positions don't matter. All columns must have the same capacity and the
+     * times must be increasing.
+     */
+    public Trajectory(DoubleBuffer time, DoubleBuffer x, DoubleBuffer y, DoubleBuffer heading,
+            DoubleBuffer vx, DoubleBuffer vy, DoubleBuffer omega) {
+        size = time.capacity();
+        if(size == 0 || x.capacity() != size || y.capacity() != size || heading.capacity() != size
+                || vx.capacity() != size || vy.capacity() != size || omega.capacity() != size)
+            throw new IllegalArgumentException("Every column needs the same, non-zero number of samples");
+        this.time = time;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.vx = vx;
+        this.vy = vy;
+        this.omega = omega;
+    }
+
+    /**
+     * Gets the state at a time, interpolating between samples.
+     * Before the start it's the first sample, after the end the last one.
+     * @param t Time since the start in seconds.
+     * @param state Output buffer for {@code {x, y, heading, vx, vy, omega}}.
+     */
+    public void sample(double t, double[] state) {
+        int n = size;
+        if(t <= time.get(0)) {
+            copy(0, state);
+            return;
+        }
+        if(t >= time.get(n - 1)) {
+            copy(n - 1, state);
+            return;
+        }
+
+        // Binary search for the last sample at or before t.
+        int low = 0, high = n - 1;
+        while(high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if(time.get(middle) <= t)
+                low = middle;
+            else
+                high = middle;
+        }
+        double f = (t - time.get(low)) / (time.get(high) - time.get(low));
+        state[0] = lerp(x, low, high, f);
+        state[1] = lerp(y, low, high, f);
+        state[2] = heading.get(low) + MathUtils.normalizeAngleRad2(heading.get(high) - heading.get(low)) * f;
+        state[3] = lerp(vx, low, high, f);
+        state[4] = lerp(vy, low, high, f);
+        state[5] = lerp(omega, low, high, f);
+    }
+
+    private static double lerp(DoubleBuffer column, int low, int high, double f) {
+        double a = column.get(low);
+        return a + (column.get(high) - a) * f;
+    }
+
+    private void copy(int i, double[] state) {
+        state[0] = x.get(i);
+        state[1] = y.get(i);
+        state[2] = heading.get(i);
+        state[3] = vx.get(i);
+        state[4] = vy.get(i);
+        state[5] = omega.get(i);
+    }
+
+    /**
+     * @return Total time in seconds.
+     */
+    public double getDuration() {
+        return time.get(size - 1);
+    }
+
+    /**
+     * @return Number of samples.
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getTime(int i) {
+        return time.get(i);
+    }
+
+    public double getX(int i) {
+        return x.get(i);
+    }
+
+    public double getY(int i) {
+        return y.get(i);
+    }
+
+    public double getHeading(int i) {
+        return heading.get(i);
+    }
+
+    public double getVx(int i) {
+        return vx.get(i);
+    }
+
+    public double getVy(int i) {
+        return vy.get(i);
+    }
+
+    public double getOmega(int i) {
+        return omega.get(i);
+    }
+}
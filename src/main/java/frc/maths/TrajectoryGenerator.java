@@ -0,0 +1,228 @@
+package frc.maths;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Builds time-optimal {@link Trajectory}s for a swerve drive through a list of waypoints.
+ * The path is a Catmull-Rom spline through the waypoints, and the heading eases from each
+ * waypoint's heading to the next. The path is cut into short steps, and at every step the speed
+ * is capped so that no wheel goes over its speed limit and no module has to turn faster than its
+ * azimuth rate limit, using the {@link SwerveKinematics} of the robot. A forward pass then limits
+ * how fast the speed can rise and a backward pass how fast it can fall, which gives the fastest
+ * speed profile that stays within all of the limits, starting and ending at rest.
+ *
+ * <p>Sampling the spline and working out the limits is independent for each segment between
+ * waypoints, so that part runs in parallel. Units are whatever the module positions and limits
+ * are in, usually inches and seconds.
+ */
+public class TrajectoryGenerator {
+    // Bump whenever a change here would generate a different trajectory from the same inputs,
+    // so saved trajectories show up as stale.
+    private static final int kAlgorithmVersion = 1;
+
+    private final SwerveKinematics kinematics;
+    private final double maxWheelSpeed;
+    private final double maxWheelAcceleration;
+    private final double maxAzimuthRate;
+    private final double step;
+
+    /**
+     * @param kinematics Kinematics of the robot, with the center of rotation at the center of the robot.
+     * @param maxWheelSpeed Fastest any wheel may go.
+     * @param maxWheelAcceleration Fastest any wheel may speed up or slow down.
+     * @param maxAzimuthRate Fastest any module may turn, in radians per second.
+     * @param step Distance between samples along the path.
+     */
+    public TrajectoryGenerator(SwerveKinematics kinematics, double maxWheelSpeed, double maxWheelAcceleration,
+            double maxAzimuthRate, double step) {
+        this.kinematics = kinematics;
+        this.maxWheelSpeed = maxWheelSpeed;
+        this.maxWheelAcceleration = maxWheelAcceleration;
+        this.maxAzimuthRate = maxAzimuthRate;
+        this.step = step;
+    }
+
+    /**
+     * Generates a trajectory that starts and ends at rest.
+     * @param x X positions of the waypoints.
+     * @param y Y positions of the waypoints.
+     * @param heading Heading of the robot at each waypoint, in radians.
+     * @return The trajectory.
+     */
+    public Trajectory generate(double[] x, double[] y, double[] heading) {
+        int waypoints = x.length;
+        if(waypoints < 2 || y.length != waypoints || heading.length != waypoints)
+            throw new IllegalArgumentException("Need at least two waypoints, each with x, y and heading");
+        int segments = waypoints - 1;
+
+        // Catmull-Rom tangents, one-sided at the ends.
+        double[] tx = new double[waypoints];
+        double[] ty = new double[waypoints];
+        for(int k = 0; k < waypoints; k++) {
+            int before = Math.max(k - 1, 0);
+            int after = Math.min(k + 1, waypoints - 1);
+            double scale = (after - before) == 2 ? 0.5 : 1;
+            tx[k] = (x[after] - x[before]) * scale;
+            ty[k] = (y[after] - y[before]) * scale;
+        }
+
+        // Split every segment into steps from its rough length. Each segment owns the points from
+        // its start up to (not including) its end; the last one also gets the final point.
+        int[] offsets = new int[segments + 1];
+        for(int k = 0; k < segments; k++) {
+            double length = estimateLength(x, y, tx, ty, k);
+            if(length < 1e-9)
+                throw new IllegalArgumentException("Waypoints " + k + " and " + (k + 1) + " are in the same place");
+            offsets[k + 1] = offsets[k] + Math.max(2, (int) Math.ceil(length / step));
+        }
+        int points = offsets[segments] + 1;
+        int modules = kinematics.getModuleCount();
+
+        double[] px = new double[points];
+        double[] py = new double[points];
+        double[] ph = new double[points];
+        double[] tangent = new double[points];
+        double[] headingRate = new double[points]; // dheading/ds
+        double[] wheelFactor = new double[points]; // fastest wheel speed per unit of path speed
+        double[] moduleAngles = new double[points * modules];
+
+        IntStream.range(0, segments).parallel().forEach(k -> {
+            double[] moduleVx = new double[modules];
+            double[] moduleVy = new double[modules];
+            int count = offsets[k + 1] - offsets[k] + (k == segments - 1 ? 1 : 0);
+            double headingChange = MathUtils.normalizeAngleRad2(heading[k + 1] - heading[k]);
+            for(int j = 0; j < count; j++) {
+                int p = offsets[k] + j;
+                double u = (double) j / (offsets[k + 1] - offsets[k]);
+                samplePoint(x, y, tx, ty, k, u, heading[k], headingChange, p, px, py, ph, tangent, headingRate);
+
+                // How fast each wheel goes, and which way, per unit of path speed.
+                double cos = Math.cos(tangent[p] - ph[p]);
+                double sin = Math.sin(tangent[p] - ph[p]);
+                kinematics.toModuleVelocities(cos, sin, headingRate[p], moduleVx, moduleVy);
+                double fastest = 0;
+                for(int i = 0; i < modules; i++) {
+                    fastest = Math.max(fastest, Math.hypot(moduleVx[i], moduleVy[i]));
+                    moduleAngles[p * modules + i] = Math.atan2(moduleVy[i], moduleVx[i]);
+                }
+                wheelFactor[p] = fastest;
+            }
+        });
+
+        // Speed limits at every point.
+        double[] distance = new double[points]; // from the previous point
+        double[] speed = new double[points];
+        for(int p = 0; p < points; p++) {
+            speed[p] = maxWheelSpeed / wheelFactor[p];
+            if(p == 0)
+                continue;
+            distance[p] = Math.hypot(px[p] - px[p - 1], py[p] - py[p - 1]);
+            // Azimuth rate: the module turning fastest between the two points sets the limit for both.
+            double turn = 0;
+            for(int i = 0; i < modules; i++) {
+                turn = Math.max(turn, Math.abs(MathUtils.normalizeAngleRad2(
+                        moduleAngles[p * modules + i] - moduleAngles[(p - 1) * modules + i])));
+            }
+            if(turn > 0) {
+                double limit = maxAzimuthRate * distance[p] / turn;
+                speed[p] = Math.min(speed[p], limit);
+                speed[p - 1] = Math.min(speed[p - 1], limit);
+            }
+        }
+        speed[0] = 0;
+        speed[points - 1] = 0;
+
+        // Forward pass limits speeding up, backward pass limits slowing down.
+        for(int p = 1; p < points; p++) {
+            double acceleration = maxWheelAcceleration / wheelFactor[p - 1];
+            speed[p] = Math.min(speed[p], Math.sqrt(speed[p - 1] * speed[p - 1] + 2 * acceleration * distance[p]));
+        }
+        for(int p = points - 2; p >= 0; p--) {
+            double acceleration = maxWheelAcceleration / wheelFactor[p + 1];
+            speed[p] = Math.min(speed[p], Math.sqrt(speed[p + 1] * speed[p + 1] + 2 * acceleration * distance[p + 1]));
+        }
+
+        double[] time = new double[points];
+        double[] vx = new double[points];
+        double[] vy = new double[points];
+        double[] omega = new double[points];
+        for(int p = 0; p < points; p++) {
+            if(p > 0) {
+                double average = (speed[p - 1] + speed[p]) / 2;
+                time[p] = time[p - 1] + (average > 1e-9 ? distance[p] / average : 0);
+            }
+            vx[p] = speed[p] * Math.cos(tangent[p]);
+            vy[p] = speed[p] * Math.sin(tangent[p]);
+            omega[p] = speed[p] * headingRate[p];
+        }
+        return new Trajectory(time, px, py, ph, vx, vy, omega);
+    }
+
+    /**
+     * Checksum of everything a trajectory depends on: the waypoints, the limits, the step, the module
+     * positions and the version of the algorithm. Two calls give the same checksum only if
+     * {@link #generate} would give the same trajectory, so it tells whether a saved one is stale.
+     * @param x X positions of the waypoints.
+     * @param y Y positions of the waypoints.
+     * @param heading Heading of the robot at each waypoint, in radians.
+     * @return The checksum.
+     */
+    public long getChecksum(double[] x, double[] y, double[] heading) {
+        int modules = kinematics.getModuleCount();
+        ByteBuffer inputs = ByteBuffer.allocate(8 * (6 + 2 * modules + x.length + y.length + heading.length));
+        inputs.putLong(kAlgorithmVersion);
+        inputs.putDouble(maxWheelSpeed).putDouble(maxWheelAcceleration).putDouble(maxAzimuthRate).putDouble(step);
+        inputs.putLong(x.length);
+        for(int i = 0; i < modules; i++) {
+            inputs.putDouble(kinematics.getOffsetX(i)).putDouble(kinematics.getOffsetY(i));
+        }
+        for(double value : x)
+            inputs.putDouble(value);
+        for(double value : y)
+            inputs.putDouble(value);
+        for(double value : heading)
+            inputs.putDouble(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(inputs.array());
+        return crc.getValue();
+    }
+
+    private static double estimateLength(double[] x, double[] y, double[] tx, double[] ty, int k) {
+        double length = 0;
+        double lastX = x[k], lastY = y[k];
+        for(int j = 1; j <= 16; j++) {
+            double u = j / 16.0;
+            double h00 = 2 * u * u * u - 3 * u * u + 1, h10 = u * u * u - 2 * u * u + u;
+            double h01 = -2 * u * u * u + 3 * u * u, h11 = u * u * u - u * u;
+            double sx = h00 * x[k] + h10 * tx[k] + h01 * x[k + 1] + h11 * tx[k + 1];
+            double sy = h00 * y[k] + h10 * ty[k] + h01 * y[k + 1] + h11 * ty[k + 1];
+            length += Math.hypot(sx - lastX, sy - lastY);
+            lastX = sx;
+            lastY = sy;
+        }
+        return length;
+    }
+
+    private static void samplePoint(double[] x, double[] y, double[] tx, double[] ty, int k, double u,
+            double startHeading, double headingChange, int p,
+            double[] px, double[] py, double[] ph, double[] tangent, double[] headingRate) {
+        // Cubic Hermite basis and its derivative.
+        double u2 = u * u, u3 = u2 * u;
+        double h00 = 2 * u3 - 3 * u2 + 1, h10 = u3 - 2 * u2 + u, h01 = -2 * u3 + 3 * u2, h11 = u3 - u2;
+        double d00 = 6 * u2 - 6 * u, d10 = 3 * u2 - 4 * u + 1, d01 = -6 * u2 + 6 * u, d11 = 3 * u2 - 2 * u;
+
+        px[p] = h00 * x[k] + h10 * tx[k] + h01 * x[k + 1] + h11 * tx[k + 1];
+        py[p] = h00 * y[k] + h10 * ty[k] + h01 * y[k + 1] + h11 * ty[k + 1];
+        double dx = d00 * x[k] + d10 * tx[k] + d01 * x[k + 1] + d11 * tx[k + 1];
+        double dy = d00 * y[k] + d10 * ty[k] + d01 * y[k + 1] + d11 * ty[k + 1];
+        tangent[p] = Math.atan2(dy, dx);
+
+        // Smoothstep from one heading to the next, so the robot stops turning at every waypoint.
+        ph[p] = MathUtils.normalizeAngleRad2(startHeading + headingChange * (3 * u2 - 2 * u3));
+        double dHeading = headingChange * (6 * u - 6 * u2);
+        headingRate[p] = dHeading / Math.max(Math.hypot(dx, dy), 1e-9);
+    }
+}
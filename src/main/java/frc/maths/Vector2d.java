@@ -37,7 +37,7 @@ public class Vector2d {
      * @return Length of the vector.
      */
     public double getMagnitude() {
-        return Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
+        return Math.sqrt(x * x + y * y);
     }
 
     /**
@@ -45,7 +45,7 @@ public class Vector2d {
      * @return Angle of vector in radians.
      */
     public double getAngle() {
-        return MathUtils.normalizeAngleRad(Math.atan2(y, x));
+        return MathUtils.normalizeAngleRad(MathUtils.atan2(y, x));
     }
 
     /**
@@ -93,7 +93,9 @@ public class Vector2d {
      * @return Rotated vector.
      */
     public Vector2d rotate(double angle) {
-        return new Vector2d(x * Math.cos(angle) - y * Math.sin(angle), x * Math.sin(angle) + y * Math.cos(angle));
+        double cos = MathUtils.cos(angle);
+        double sin = MathUtils.sin(angle);
+        return new Vector2d(x * cos - y * sin, x * sin + y * cos);
     }
 
     /**
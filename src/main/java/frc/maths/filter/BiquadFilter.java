@@ -0,0 +1,70 @@
+package frc.maths.filter;
+
+/**
+ * Second order IIR filter, in transposed direct form II. Rolls off at 40 dB per decade above the
+ * cutoff, twice as steep as an {@link ExponentialFilter}, for about the same delay in the passband.
+ * Coefficients follow the RBJ audio EQ cookbook. Starts settled at the first sample, so it doesn't
+ * ring up from zero.
+ */
+public class BiquadFilter implements Filter {
+    /** Q of a Butterworth response: flat passband, no overshoot peak. */
+    public static final double kButterworthQ = 1 / Math.sqrt(2);
+
+    private final double b0, b1, b2, a1, a2;
+    private double z1, z2;
+    private boolean started;
+
+    /**
+     * @param b0 Feedforward coefficients, normalized so a0 is 1.
+     * @param b1
+     * @param b2
+     * @param a1 Feedback coefficients, normalized so a0 is 1.
+     * @param a2
+     */
+    public BiquadFilter(double b0, double b1, double b2, double a1, double a2) {
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.a1 = a1;
+        this.a2 = a2;
+    }
+
+    /**
+     * @param cutoff Cutoff frequency in Hz, below half the sample rate.
+     * @param sampleRate Rate samples come in at, in Hz.
+     * @param q Sharpness of the knee, {@link #kButterworthQ} for none.
+     * @return A low-pass filter.
+     */
+    public static BiquadFilter lowPass(double cutoff, double sampleRate, double q) {
+        if(cutoff <= 0 || cutoff >= sampleRate / 2)
+            throw new IllegalArgumentException("Cutoff must be between 0 and " + sampleRate / 2 + " Hz, got " + cutoff);
+        double w0 = 2 * Math.PI * cutoff / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        double a0 = 1 + alpha;
+        return new BiquadFilter((1 - cos) / 2 / a0, (1 - cos) / a0, (1 - cos) / 2 / a0, -2 * cos / a0, (1 - alpha) / a0);
+    }
+
+    @Override
+    public double calculate(double input) {
+        if(!started) {
+            // The state the filter would be in after a long time at this input.
+            double gain = (b0 + b1 + b2) / (1 + a1 + a2);
+            double output = gain * input;
+            z1 = output - b0 * input;
+            z2 = b2 * input - a2 * output;
+            started = true;
+        }
+        double output = b0 * input + z1;
+        z1 = b1 * input - a1 * output + z2;
+        z2 = b2 * input - a2 * output;
+        return output;
+    }
+
+    @Override
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+        started = false;
+    }
+}
@@ -0,0 +1,46 @@
+package frc.maths.filter;
+
+/**
+ * Exponential moving average: every sample moves the output a fixed fraction of the way towards it.
+ * Starts at the first sample instead of ramping up from zero.
+ */
+public class ExponentialFilter implements Filter {
+    private final double alpha;
+    private double value;
+    private boolean started;
+
+    /**
+     * @param alpha Fraction of the way to move towards each sample, from 0 (never moves) to 1 (no filtering).
+     */
+    public ExponentialFilter(double alpha) {
+        if(alpha <= 0 || alpha > 1)
+            throw new IllegalArgumentException("Alpha must be in (0, 1], got " + alpha);
+        this.alpha = alpha;
+    }
+
+    /**
+     * @param timeConstant Time for the output to get 63% of the way through a step, in seconds.
+     * @param period Time between samples in seconds.
+     * @return The filter.
+     */
+    public static ExponentialFilter fromTimeConstant(double timeConstant, double period) {
+        return new ExponentialFilter(1 - Math.exp(-period / timeConstant));
+    }
+
+    @Override
+    public double calculate(double input) {
+        if(!started) {
+            value = input;
+            started = true;
+        } else {
+            value += alpha * (input - value);
+        }
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        value = 0;
+        started = false;
+    }
+}
@@ -0,0 +1,36 @@
+package frc.maths.filter;
+
+/**
+ * Filters a stream of samples, one at a time, at a fixed rate.
+ * Every filter in this package keeps its state in fields allocated up front, so filtering a sample
+ * allocates nothing. Use one instance per signal; they aren't thread safe.
+ */
+public interface Filter {
+
+    /**
+     * @param input Next sample.
+     * @return Filtered value.
+     */
+    double calculate(double input);
+
+    /**
+     * Forgets every sample seen so far. The next sample starts the filter over.
+     */
+    void reset();
+
+    /**
+     * @param next Filter to run the output of this one through.
+     * @return Both filters, this one first.
+     */
+    default Filter then(Filter next) {
+        return new FilterChain(this, next);
+    }
+
+    /**
+     * @param filters Filters to run in order.
+     * @return One filter running all of them, each on the output of the one before.
+     */
+    static Filter chain(Filter... filters) {
+        return new FilterChain(filters);
+    }
+}
@@ -0,0 +1,34 @@
+package frc.maths.filter;
+
+/**
+ * Runs a sample through several filters in order, see {@link Filter#chain(Filter...)}.
+ * For example a median to drop spikes, then a low-pass.
+ */
+public class FilterChain implements Filter {
+    private final Filter[] filters;
+
+    /**
+     * @param filters Filters to run, first one first.
+     */
+    public FilterChain(Filter... filters) {
+        if(filters.length == 0)
+            throw new IllegalArgumentException("A filter chain needs at least one filter");
+        this.filters = filters.clone();
+    }
+
+    @Override
+    public double calculate(double input) {
+        double value = input;
+        for(Filter filter : filters) {
+            value = filter.calculate(value);
+        }
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        for(Filter filter : filters) {
+            filter.reset();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package frc.maths.filter;
+
+import java.util.Arrays;
+
+/**
+ * Median of the last {@code n} samples, or of every sample so far until there are {@code n}.
+ * Drops single-sample spikes, like a garbled CAN frame, without smearing them into the output the
+ * way an average does. The window is kept sorted next to the ring of samples, so each sample is one
+ * binary search and a shift of at most {@code n} values; meant for small windows, 3 to 9.
+ */
+public class MedianFilter implements Filter {
+    private final RingBuffer window;
+    private final double[] sorted;
+    private int size;
+
+    /**
+     * @param samples Number of samples to take the median of.
+     */
+    public MedianFilter(int samples) {
+        window = new RingBuffer(samples);
+        sorted = new double[samples];
+    }
+
+    @Override
+    public double calculate(double input) {
+        if(window.isFull()) {
+            // Take the oldest sample out of the sorted window.
+            int index = Arrays.binarySearch(sorted, 0, size, window.getOldest());
+            System.arraycopy(sorted, index + 1, sorted, index, size - index - 1);
+            size--;
+        }
+        window.add(input);
+
+        int index = Arrays.binarySearch(sorted, 0, size, input);
+        if(index < 0)
+            index = -index - 1;
+        System.arraycopy(sorted, index, sorted, index + 1, size - index);
+        sorted[index] = input;
+        size++;
+
+        int middle = size >> 1;
+        return (size & 1) == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    @Override
+    public void reset() {
+        window.clear();
+        size = 0;
+    }
+}
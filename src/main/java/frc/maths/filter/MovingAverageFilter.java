@@ -0,0 +1,45 @@
+package frc.maths.filter;
+
+/**
+ * Average of the last {@code n} samples, or of every sample so far until there are {@code n}.
+ * Keeps a running sum, so each sample costs the same whatever the window. The sum is compensated
+ * (Kahan-Babuska) so adding and dropping samples forever doesn't drift it.
+ */
+public class MovingAverageFilter implements Filter {
+    private final RingBuffer window;
+    private double sum;
+    private double compensation;
+
+    /**
+     * @param samples Number of samples to average.
+     */
+    public MovingAverageFilter(int samples) {
+        window = new RingBuffer(samples);
+    }
+
+    @Override
+    public double calculate(double input) {
+        boolean full = window.isFull();
+        double dropped = window.add(input);
+        add(input);
+        if(full)
+            add(-dropped);
+        return (sum + compensation) / window.size();
+    }
+
+    private void add(double value) {
+        double total = sum + value;
+        if(Math.abs(sum) >= Math.abs(value))
+            compensation += (sum - total) + value;
+        else
+            compensation += (value - total) + sum;
+        sum = total;
+    }
+
+    @Override
+    public void reset() {
+        window.clear();
+        sum = 0;
+        compensation = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package frc.maths.filter;
+
+/**
+ * Fixed-capacity ring of doubles. Once full, every new value replaces the oldest one.
+ * All memory is allocated up front.
+ */
+public class RingBuffer {
+    private final double[] values;
+    private int head; // Next slot to write.
+    private int size;
+
+    /**
+     * @param capacity Number of values kept.
+     */
+    public RingBuffer(int capacity) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a value, dropping the oldest one if full.
+     * @param value Value to add.
+     * @return The value that was dropped, or 0 if nothing was.
+     */
+    public double add(double value) {
+        double dropped = size == values.length ? values[head] : 0;
+        values[head] = value;
+        head = head + 1 == values.length ? 0 : head + 1;
+        if(size < values.length)
+            size++;
+        return dropped;
+    }
+
+    /**
+     * @param age 0 for the newest value, up to {@code size() - 1} for the oldest.
+     * @return The value.
+     */
+    public double get(int age) {
+        if(age < 0 || age >= size)
+            throw new IndexOutOfBoundsException("Age " + age + " with " + size + " values");
+        int index = head - 1 - age;
+        return values[index < 0 ? index + values.length : index];
+    }
+
+    /**
+     * @return The oldest value. Only valid when not empty.
+     */
+    public double getOldest() {
+        return get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    /**
+     * Empties the buffer.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
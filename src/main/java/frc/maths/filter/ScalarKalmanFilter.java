@@ -0,0 +1,54 @@
+package frc.maths.filter;
+
+/**
+ * Kalman filter for one value that wanders randomly between samples and is measured with noise.
+ * Weighs every sample by how uncertain the estimate is against how noisy the measurement is, so it
+ * follows quickly at first and settles down to the optimal steady-state smoothing. Starts at the first sample.
+ */
+public class ScalarKalmanFilter implements Filter {
+    private final double processVariance;
+    private final double measurementVariance;
+    private double estimate;
+    private double variance;
+    private boolean started;
+
+    /**
+     * @param processVariance How much the real value can change between samples, as a variance.
+     * @param measurementVariance Variance of the measurement noise.
+     */
+    public ScalarKalmanFilter(double processVariance, double measurementVariance) {
+        if(processVariance < 0 || measurementVariance <= 0)
+            throw new IllegalArgumentException("Variances must be positive");
+        this.processVariance = processVariance;
+        this.measurementVariance = measurementVariance;
+    }
+
+    @Override
+    public double calculate(double input) {
+        if(!started) {
+            estimate = input;
+            variance = measurementVariance;
+            started = true;
+            return estimate;
+        }
+        variance += processVariance;
+        double gain = variance / (variance + measurementVariance);
+        estimate += gain * (input - estimate);
+        variance *= 1 - gain;
+        return estimate;
+    }
+
+    /**
+     * @return Variance of the current estimate.
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    @Override
+    public void reset() {
+        estimate = 0;
+        variance = 0;
+        started = false;
+    }
+}
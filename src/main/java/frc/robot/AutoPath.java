@@ -0,0 +1,58 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+
+import frc.maths.Trajectory;
+import frc.subsystems.SwerveDrive;
+import frc.util.TrajectoryCache;
+
+/**
+ * Paths driven in autonomous, as waypoints in inches and headings in radians from the starting pose.
+ * Their trajectories are generated at build time by {@code ./gradlew generateTrajectories} and
+ * loaded with {@link #load(TrajectoryCache)}.
+ */
+public enum AutoPath {
+    // Forward five feet while turning to face left.
+    FORWARD_TURN(new double[] { 0, 30, 60 }, new double[] { 0, 0, 0 }, new double[] { 0, 0, Math.PI / 2 });
+
+    private final double[] x, y, heading;
+
+    AutoPath(double[] x, double[] y, double[] heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
+
+    /**
+     * @param cache Cache to load from.
+     * @return The trajectory for this path, generated on the spot if the saved one is missing or stale.
+     */
+    public Trajectory load(TrajectoryCache cache) {
+        return cache.load(getFileName(), x, y, heading);
+    }
+
+    /**
+     * @return Name of the file the trajectory is saved in, without the extension.
+     */
+    public String getFileName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Generates every path into the directory given as the first argument.
+     */
+    public static void main(String... args) throws IOException {
+        if(args.length < 1) {
+            System.out.println("Usage: AutoPath <output dir>");
+            return;
+        }
+
+        TrajectoryCache cache = new TrajectoryCache(new File(args[0]), SwerveDrive.createTrajectoryGenerator());
+        for(AutoPath path : values()) {
+            Trajectory trajectory = cache.save(path.getFileName(), path.x, path.y, path.heading);
+            System.out.println(cache.getFile(path.getFileName()) + ": " + trajectory.size() + " samples, "
+                    + trajectory.getDuration() + " s");
+        }
+    }
+}
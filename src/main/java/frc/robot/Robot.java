@@ -7,37 +7,122 @@
 
 package frc.robot;
 
+import java.io.File;
+
 import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.maths.FastMath;
 import frc.maths.MathUtils;
+import frc.maths.RelayAutotuner;
+import frc.maths.Trajectory;
 import frc.maths.Vector2d;
+import frc.maths.filter.Filter;
+import frc.maths.filter.MedianFilter;
 import frc.subsystems.DiffSwerveModuleSpark;
+import frc.subsystems.DrivetrainHealthMonitor;
+import frc.subsystems.ModuleAutotuner;
+import frc.subsystems.SparkConfig;
+import frc.subsystems.SparkConfigurator;
+import frc.subsystems.SwerveDrive;
 import frc.subsystems.DiffSwerveModule.ModuleID;
+import frc.util.FlightLogger;
+import frc.util.LoopProfiler;
+import frc.util.FlightLogger.RecordType;
+import frc.util.LoopProfiler.Phase;
+import frc.util.RealTimeScheduler;
+import frc.util.Telemetry;
+import frc.util.TrajectoryCache;
+import frc.util.TunableBoolean;
+import frc.util.TuningRegistry;
 
 public class Robot extends TimedRobot {
 
-  //DiffSwerveModule frontRight;
+  LoopProfiler profiler;
+  FlightLogger flightLogger;
+  RealTimeScheduler scheduler;
+  SwerveDrive swerveDrive;
+  DrivetrainHealthMonitor driveHealth;
   DiffSwerveModuleSpark frontRight;
+  Trajectory autoTrajectory;
+  long autoStart;
+
+  // Tunes the front right module on entering test mode, with the robot on blocks.
+  TunableBoolean autotune = TuningRegistry.bool("Autotune FR Module", false);
+  ModuleAutotuner autotuner;
 
   Joystick joystick = new Joystick(1);
+  Vector2d deadband = new Vector2d(0.15, 0.15);
+  // Drops single-sample glitches on the axes before the deadband.
+  Filter joystickX = new MedianFilter(3), joystickY = new MedianFilter(3), joystickZ = new MedianFilter(3);
+
+  int joystickAngleKey = Telemetry.register("Joystick Angle", 0.01, 1);
+  int joystickMagnitudeKey = Telemetry.register("Joystick Magnitude", 0.01, 1);
+  int frontRightVelocityKey = Telemetry.register("FR Module Velocity");
+  // Measured by the roboRIO, to check the status frame periods against the real bus.
+  int canUtilizationKey = Telemetry.register("CAN Utilization", 0.01, 1);
 
   @Override
   public void robotInit() {
-    frontRight = new DiffSwerveModuleSpark(ModuleID.FR);
+    // Before any threads start, see FastMath for the error bounds.
+    FastMath.setEnabled(true);
+
+    // Reports once a second.
+    profiler = new LoopProfiler(getPeriod(), 50);
+    swerveDrive = new SwerveDrive(RobotController::getFPGATime);
+    swerveDrive.setProfiler(profiler);
+    // Status frames occasionally carry a garbage velocity; a median drops it.
+    swerveDrive.setVelocityFilter(() -> new MedianFilter(3));
+    // All eight controllers at once, and only what they don't already have. Burned to flash so a
+    // brownout reboot comes back configured.
+    swerveDrive.configureMotors(new SparkConfigurator(new File("/home/lvuser/sparkconfig"), true), SparkConfig.kDefault);
+
+    // 32 MB per file, keeping the last 8.
+    flightLogger = new FlightLogger(new File("/home/lvuser/flightlogs"), 32 << 20, 8, RobotController::getFPGATime);
+    swerveDrive.setFlightLogger(flightLogger);
+    frontRight = swerveDrive.getModule(ModuleID.FR);
+
+    // Generated at build time and deployed with the code.
+    TrajectoryCache trajectories = new TrajectoryCache(new File("/home/lvuser/deploy/trajectories"),
+        swerveDrive.getTrajectoryGenerator());
+    autoTrajectory = AutoPath.FORWARD_TURN.load(trajectories);
+
+    // Steering runs at 200 Hz, matching the 5 ms position frames of the modules. Drive setpoints
+    // still come from teleopPeriodic at 50 Hz. Each run sends eight commands, so the rate is bounded by
+    // the bus: SimHarness measures the drive motors at 59% of it here, and at 124% for 500 Hz with 2 ms
+    // frames (114% even with status 0 and 1 slowed to 100 and 20 ms). Check "CAN Utilization" before
+    // raising it together with DiffSwerveModuleSpark.kStatus2PeriodMs and SimHarness.kSteeringRate.
+    scheduler = new RealTimeScheduler(isReal());
+    swerveDrive.runSteeringAt(scheduler, 200, 30);
+    scheduler.addTask("Telemetry", 0.1, 0, Telemetry::publish);
+    scheduler.addTask("Health", 1.0, 0, scheduler::report);
+    // Writes out full flight logs and maps the next one, off the control threads.
+    scheduler.addTask("Flight Log", 1.0, 0, flightLogger::service);
+    // Polls the controllers at 10 Hz, well clear of the steering thread.
+    driveHealth = new DrivetrainHealthMonitor(swerveDrive, RobotController::getFPGATime);
+    scheduler.addTask("Drive Health", 0.1, 0, driveHealth::check);
+    scheduler.start();
   }
 
   @Override
   public void robotPeriodic() {
-    frontRight.printTelemetry();
+    swerveDrive.printTelemetry();
+    Telemetry.put(canUtilizationKey, RobotController.getCANStatus().percentBusUtilization);
+    profiler.mark(Phase.TELEMETRY);
+    profiler.endLoop();
   }
 
   @Override
   public void autonomousInit() {
+    swerveDrive.getOdometry().resetPose(0, 0, 0);
+    autoStart = RobotController.getFPGATime();
   }
 
   @Override
   public void autonomousPeriodic() {
+    profiler.startLoop();
+    swerveDrive.followTrajectory(autoTrajectory, (RobotController.getFPGATime() - autoStart) * 1e-6);
   }
 
   @Override
@@ -47,19 +132,20 @@ public class Robot extends TimedRobot {
 
   @Override
   public void teleopPeriodic() {
-    Vector2d output = MathUtils.adjustDeadband(joystick, new Vector2d(0.15, 0.15), true, false);
+    profiler.startLoop();
 
-    SmartDashboard.putNumber("Joystick Angle", output.getAngle());
-    SmartDashboard.putNumber("Joystick Magnitude", output.getMagnitude());
+    Vector2d output = MathUtils.adjustDeadband(joystickX.calculate(joystick.getX()), joystickY.calculate(joystick.getY()),
+        deadband, true, false);
+    double rotation = MathUtils.adjustDeadband(joystickZ.calculate(joystick.getZ()), deadband.getX());
+    flightLogger.log(RecordType.JOYSTICK, 0, output.getX(), output.getY(), rotation, 0);
+    profiler.mark(Phase.INPUT);
 
-    // Parameter d is the max velocity.
-    double outputVelocity = MathUtils.map(output.getMagnitude(), 0, Math.sqrt(2), 0, 2000);
-    SmartDashboard.putNumber("Output Velocity", outputVelocity);
+    // No gyro yet, so drive robot-centric.
+    swerveDrive.drive(0, rotation, output.getX(), output.getY());
 
-    // Wraps the angle to [-pi, pi].
-    double outputAngle = MathUtils.normalizeAngleRad2(output.getAngle());
-
-    frontRight.set(outputAngle, outputVelocity);
+    // Counted as telemetry, which ends in robotPeriodic().
+    Telemetry.put(joystickAngleKey, output.getAngle());
+    Telemetry.put(joystickMagnitudeKey, output.getMagnitude());
   }
 
   @Override
@@ -71,25 +157,40 @@ public class Robot extends TimedRobot {
     SmartDashboard.putNumber("kP", 0);
     SmartDashboard.putNumber("kI", 0);
     SmartDashboard.putNumber("kD", 0);
+
+    if(autotune.get()) {
+      autotuner = swerveDrive.startAutotune(ModuleID.FR, RelayAutotuner.Rule.SOME_OVERSHOOT);
+      autotune.set(false);
+    }
   }
 
   @Override
   public void testPeriodic() {
+    if(autotuner != null) {
+      // Read first: once it stops, everything the tuner finished is visible to periodic().
+      boolean running = swerveDrive.isAutotuning();
+      // The tuner runs on the steering task, its gains are applied and printed from here.
+      if(!autotuner.periodic() && running)
+        return;
+      autotuner = null;
+    }
+
     double angle = SmartDashboard.getNumber("Angle", 0);
     double magnitude = SmartDashboard.getNumber("Magnitude", 0);
     
     double x = magnitude * Math.cos(angle);
     double y = magnitude * Math.sin(angle);
 
-    Vector2d posVec = new Vector2d(x, y);
-    frontRight.set(posVec);
+    // The steering task owns the modules, so test through the drivetrain.
+    // Magnitude is still in encoder ticks.
+    swerveDrive.drive(0, 0, x / SwerveDrive.kMaxVelocity, y / SwerveDrive.kMaxVelocity);
 
     //frontRight.process();
     //frontRight.setReference();
     //frontRight.updateTelemetry();
     //SmartDashboard.putNumber("Motor2Pos", frontRight.getMotor2Pos());
     //SmartDashboard.putNumber("FR Module Rotation", frontRight.getModulePosNative());
-    SmartDashboard.putNumber("FR Module Velocity", frontRight.getM1Velocity());
+    Telemetry.put(frontRightVelocityKey, frontRight.getM1Velocity());
   }
 
 }
@@ -0,0 +1,35 @@
+package frc.sim;
+
+/**
+ * Joystick input over time, for driving the robot in simulation.
+ */
+@FunctionalInterface
+public interface JoystickScript {
+
+    /**
+     * @param time Time since the start of the run in seconds.
+     * @param axes Output buffer for {@code {x, y, z}}, raw as the joystick reports them (-1..1).
+     */
+    void get(double time, double[] axes);
+
+    /**
+     * Holds the stick still, then moves it in steps.
+     * @param steps Rows of {@code {startTime, x, y, z}} in order of time. Before the first one the
+     *        stick is centered, after that each row holds until the next one starts.
+     * @return The script.
+     */
+    static JoystickScript steps(double[]... steps) {
+        return (time, axes) -> {
+            axes[0] = 0;
+            axes[1] = 0;
+            axes[2] = 0;
+            for(double[] step : steps) {
+                if(step[0] > time)
+                    break;
+                axes[0] = step[1];
+                axes[1] = step[2];
+                axes[2] = step[3];
+            }
+        };
+    }
+}
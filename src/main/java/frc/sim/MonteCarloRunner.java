@@ -0,0 +1,247 @@
+package frc.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import frc.maths.FastMath;
+
+/**
+ * Sweeps gains against randomized conditions and ranks the gains by how they hold up.
+ * Every combination of gains in the grid below is run through every scenario of
+ * {@link SimHarness#kScenarios}, under a number of random draws of CAN latency, encoder noise and
+ * battery sag. The draws are the same for every combination, so they are compared on equal terms.
+ * The combinations are ranked by failure rate, then 90th percentile settling time, then 90th
+ * percentile tracking error.
+ *
+ * <p>Runs are split across all cores on a {@link ForkJoinPool}. Each worker thread builds one
+ * {@link SimHarness} and resets it between runs, and results go into preallocated arrays by run
+ * index, so workers share nothing while running. Every run is deterministic, so the report doesn't
+ * depend on how the work was split.
+ *
+ * <p>Run with {@code ./gradlew sweep -Pdraws=16}, or directly with the number of draws as the argument.
+ */
+public class MonteCarloRunner {
+    // Gain grid.
+    private static final double[] kSteeringP = { 250, 500, 750, 1000, 1500 };
+    private static final double[] kSteeringD = { 0, 500, 2000 };
+    private static final double[] kSteeringLimit = { 100, 150, 200 }; // rpm
+    private static final double[] kSparkP = { 2.5e-5, 5e-5, 1e-4 };
+    private static final double[] kSparkFF = { 0.00015, 0.000156, 0.00017 };
+
+    // Ranges the conditions are drawn from, uniformly.
+    private static final long kMaxCanLatency = 10000; // us
+    private static final double kMaxPositionNoise = 0.002; // rotations
+    private static final double kMaxVelocityNoise = 10; // rpm
+    private static final double kMinBattery = 11.5, kMaxBattery = 12.8; // V
+    private static final double kMinResistance = 0.01, kMaxResistance = 0.03; // ohm
+
+    // Runs per fork join leaf.
+    private static final int kLeafSize = 8;
+    private static final int kReportRows = 10;
+
+    private final SimVariant[] gains;
+    private final SimVariant[] variants;
+    private final Scenario[] scenarios;
+    private final int draws;
+
+    // Results by run, run = (gain * draws + draw) * scenarios + scenario.
+    private final double[] settlingTime;
+    private final double[] overshoot;
+    private final double[] trackingError;
+    private final boolean[] passed;
+    private final long[] runNanos;
+
+    private final ThreadLocal<SimHarness> harness = ThreadLocal.withInitial(() -> {
+        SimHarness harness = new SimHarness();
+        // Battery sag draws brown out on purpose; thousands of runs shouldn't each say so.
+        harness.getHealthMonitor().setLogging(false);
+        return harness;
+    });
+
+    /**
+     * @param draws Number of random draws of conditions to run every combination of gains under.
+     * @param seed Seed for the draws.
+     */
+    public MonteCarloRunner(int draws, long seed) {
+        this.draws = draws;
+        scenarios = SimHarness.kScenarios;
+
+        List<SimVariant> grid = new ArrayList<>();
+        for(double p : kSteeringP)
+            for(double d : kSteeringD)
+                for(double limit : kSteeringLimit)
+                    for(double sparkP : kSparkP)
+                        for(double sparkFF : kSparkFF)
+                            grid.add(SimVariant.kNominal.withSteeringPID(p, 0, d).withSteeringLimit(limit).withSpark(sparkP, sparkFF));
+        gains = grid.toArray(new SimVariant[0]);
+
+        Random random = new Random(seed);
+        SimVariant[] conditions = new SimVariant[draws];
+        for(int draw = 0; draw < draws; draw++) {
+            conditions[draw] = SimVariant.kNominal
+                    .withCanLatency((long) (random.nextDouble() * kMaxCanLatency))
+                    .withNoise(random.nextDouble() * kMaxPositionNoise, random.nextDouble() * kMaxVelocityNoise, random.nextLong())
+                    .withBattery(kMinBattery + random.nextDouble() * (kMaxBattery - kMinBattery),
+                            kMinResistance + random.nextDouble() * (kMaxResistance - kMinResistance));
+        }
+        variants = new SimVariant[gains.length * draws];
+        for(int g = 0; g < gains.length; g++) {
+            for(int draw = 0; draw < draws; draw++) {
+                SimVariant c = conditions[draw];
+                variants[g * draws + draw] = gains[g].withCanLatency(c.canLatency)
+                        .withNoise(c.positionNoise, c.velocityNoise, c.seed).withBattery(c.batteryVoltage, c.batteryResistance);
+            }
+        }
+
+        int runs = variants.length * scenarios.length;
+        settlingTime = new double[runs];
+        overshoot = new double[runs];
+        trackingError = new double[runs];
+        passed = new boolean[runs];
+        runNanos = new long[runs];
+    }
+
+    private class Runs extends RecursiveAction {
+        private final int from, to;
+
+        Runs(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > kLeafSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Runs(from, middle), new Runs(middle, to));
+                return;
+            }
+            SimHarness sim = harness.get();
+            for(int run = from; run < to; run++) {
+                long start = System.nanoTime();
+                SimHarness.Result result = sim.run(scenarios[run % scenarios.length], variants[run / scenarios.length]);
+                settlingTime[run] = result.settlingTime;
+                overshoot[run] = result.overshoot;
+                trackingError[run] = result.trackingError;
+                passed[run] = result.passed();
+                runNanos[run] = System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * How one combination of gains did over all of its runs.
+     */
+    public static class Summary {
+        public final SimVariant gains;
+        public final double failureRate;
+        public final double settlingP50, settlingP90;
+        public final double overshootP90;
+        public final double trackingP90;
+
+        Summary(SimVariant gains, double failureRate, double settlingP50, double settlingP90, double overshootP90, double trackingP90) {
+            this.gains = gains;
+            this.failureRate = failureRate;
+            this.settlingP50 = settlingP50;
+            this.settlingP90 = settlingP90;
+            this.overshootP90 = overshootP90;
+            this.trackingP90 = trackingP90;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("fail %5.1f%%  settle p50 %.3f s p90 %.3f s  overshoot p90 %5.1f%%  tracking p90 %.4f rad  %s",
+                    failureRate * 100, settlingP50, settlingP90, overshootP90 * 100, trackingP90, gains.describeGains());
+        }
+    }
+
+    /**
+     * Runs everything on the given pool and waits for it.
+     * @param pool Pool to run on.
+     * @return Summary of every combination of gains, best first.
+     */
+    public List<Summary> run(ForkJoinPool pool) {
+        pool.invoke(new Runs(0, passed.length));
+
+        int perGain = draws * scenarios.length;
+        double[] settling = new double[perGain];
+        double[] over = new double[perGain];
+        double[] tracking = new double[perGain];
+        List<Summary> summaries = new ArrayList<>();
+        for(int g = 0; g < gains.length; g++) {
+            int failed = 0;
+            for(int k = 0; k < perGain; k++) {
+                int run = g * perGain + k;
+                // Never settling counts as the slowest possible, NaN sorts last.
+                settling[k] = settlingTime[run];
+                over[k] = overshoot[run];
+                tracking[k] = trackingError[run];
+                if(!passed[run])
+                    failed++;
+            }
+            Arrays.sort(settling);
+            Arrays.sort(over);
+            Arrays.sort(tracking);
+            summaries.add(new Summary(gains[g], (double) failed / perGain, percentile(settling, 50),
+                    percentile(settling, 90), percentile(over, 90), percentile(tracking, 90)));
+        }
+
+        summaries.sort(Comparator.<Summary>comparingDouble(s -> s.failureRate)
+                .thenComparingDouble(s -> Double.isNaN(s.settlingP90) ? Double.POSITIVE_INFINITY : s.settlingP90)
+                .thenComparingDouble(s -> s.trackingP90));
+        return summaries;
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * @return Number of simulated runs.
+     */
+    public int getRunCount() {
+        return passed.length;
+    }
+
+    /**
+     * @return Time spent inside runs, summed over all workers, in nanoseconds.
+     */
+    public long getTotalRunNanos() {
+        long total = 0;
+        for(long nanos : runNanos)
+            total += nanos;
+        return total;
+    }
+
+    public static void main(String... args) {
+        // Same as the robot.
+        FastMath.setEnabled(true);
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        MonteCarloRunner runner = new MonteCarloRunner(draws, 2019);
+        long start = System.nanoTime();
+        List<Summary> summaries = runner.run(pool);
+        long wall = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.printf("%d runs (%d gain combinations x %d draws x %d scenarios) in %.1f s on %d threads, "
+                + "%.1f s of simulation work (%.1fx)%n", runner.getRunCount(), runner.gains.length, draws,
+                runner.scenarios.length, wall * 1e-9, pool.getParallelism(), runner.getTotalRunNanos() * 1e-9,
+                (double) runner.getTotalRunNanos() / wall);
+        for(int i = 0; i < Math.min(kReportRows, summaries.size()); i++) {
+            System.out.printf("%3d. %s%n", i + 1, summaries.get(i));
+        }
+        for(int i = 0; i < summaries.size(); i++) {
+            if(summaries.get(i).gains.describeGains().equals(SimVariant.kNominal.describeGains())) {
+                System.out.printf("Current gains rank %d of %d: %s%n", i + 1, summaries.size(), summaries.get(i));
+            }
+        }
+    }
+}
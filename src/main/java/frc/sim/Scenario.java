@@ -0,0 +1,35 @@
+package frc.sim;
+
+/**
+ * A scripted drive and what it has to achieve, see {@link SimHarness}.
+ * Settling and tracking are measured on the steering: the largest error of any module, in radians.
+ */
+public class Scenario {
+    public final String name;
+    public final double duration;
+    public final JoystickScript script;
+    /** Time of the step that settling is measured from, in seconds. */
+    public final double stepTime;
+    /** Longest the steering may take to settle after the step, in seconds. */
+    public final double maxSettlingTime;
+    /** Largest steering error allowed over the end of the run, see {@link SimHarness#kTrackingWindow}, in radians. */
+    public final double maxTrackingError;
+
+    /**
+     * @param name Name to report the scenario under.
+     * @param duration How long to run for, in seconds.
+     * @param script Joystick input.
+     * @param stepTime Time of the step that settling is measured from, in seconds.
+     * @param maxSettlingTime Longest the steering may take to settle after the step, in seconds.
+     * @param maxTrackingError Largest steering error allowed over the end of the run, in radians.
+     */
+    public Scenario(String name, double duration, JoystickScript script, double stepTime,
+            double maxSettlingTime, double maxTrackingError) {
+        this.name = name;
+        this.duration = duration;
+        this.script = script;
+        this.stepTime = stepTime;
+        this.maxSettlingTime = maxSettlingTime;
+        this.maxTrackingError = maxTrackingError;
+    }
+}
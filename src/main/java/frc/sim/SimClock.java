@@ -0,0 +1,46 @@
+package frc.sim;
+
+import frc.util.Clock;
+
+/**
+ * Virtual clock that only moves when told to.
+ * Lets simulations run faster than real time and give the same result every run.
+ */
+public class SimClock implements Clock {
+    private long micros;
+
+    /**
+     * Creates a clock starting at zero.
+     */
+    public SimClock() {
+        this(0);
+    }
+
+    /**
+     * @param startMicros Starting time in microseconds.
+     */
+    public SimClock(long startMicros) {
+        micros = startMicros;
+    }
+
+    @Override
+    public long getMicros() {
+        return micros;
+    }
+
+    /**
+     * Moves the clock forwards.
+     * @param deltaMicros Time to advance by in microseconds.
+     */
+    public void advance(long deltaMicros) {
+        micros += deltaMicros;
+    }
+
+    /**
+     * Moves the clock forwards.
+     * @param seconds Time to advance by in seconds.
+     */
+    public void advanceSeconds(double seconds) {
+        advance(Math.round(seconds * 1e6));
+    }
+}
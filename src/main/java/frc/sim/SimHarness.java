@@ -0,0 +1,359 @@
+package frc.sim;
+
+import frc.maths.FastMath;
+import frc.maths.MathUtils;
+import frc.maths.Vector2d;
+import frc.maths.filter.Filter;
+import frc.maths.filter.MedianFilter;
+import frc.subsystems.DiffSwerveModuleSpark;
+import frc.subsystems.DrivetrainHealthMonitor;
+import frc.subsystems.SparkConfig;
+import frc.subsystems.SwerveDrive;
+import frc.subsystems.DiffSwerveModule.ModuleID;
+import frc.util.LatencyHistogram;
+import frc.util.Telemetry;
+import frc.util.TuningRegistry;
+
+/**
+ * Runs the teleop drive loop headless, against simulated motors on a {@link SimClock}.
+ * Every tick does what {@code Robot.teleopPeriodic()} does: scripted joystick axes go through the
+ * same filters and deadband and into {@link SwerveDrive#drive}. In between, the steering is stepped
+ * through {@link SwerveDrive#runSteering()} at {@link #kSteeringRate}, picking the setpoints up through
+ * the same hand-off as the steering task on the robot. Nothing waits on the wall clock and nothing
+ * runs on another thread, so a run takes as long as the computation and gives bit-for-bit the same
+ * result every time. Telemetry and tunables are kept off NetworkTables, so no native library is needed.
+ *
+ * <p>The drivetrain is built once and reset before every run, so one harness can run many
+ * scenarios and {@link SimVariant}s without allocating a new robot each time. Not thread safe;
+ * use one harness per thread, as {@link MonteCarloRunner} does.
+ *
+ * <p>The scenarios are checked as part of the build by {@code SimHarnessTest}. Running {@link #main}
+ * ({@code ./gradlew simulate}) prints the full report: settling, tracking, bus load, throughput and
+ * steering latency for every scenario in {@link #kScenarios}, and how long the {@link DrivetrainHealthMonitor}
+ * took to flag each {@link SimVariant.Fault}.
+ */
+public class SimHarness {
+    public static final double kPeriod = 0.02; // s, same as TimedRobot
+    // Same as Robot.
+    public static final double kSteeringRate = 200; // Hz
+    private static final int kSteeringSteps = (int) Math.round(kPeriod * kSteeringRate);
+    // Same as Robot.
+    private static final Vector2d kDeadband = new Vector2d(0.15, 0.15);
+    // The steering is settled once every module is within this of its setpoint.
+    public static final double kSettleBand = 0.05; // rad
+    // Tracking error is the worst steering error over the end of the run, once transients are over.
+    public static final double kTrackingWindow = 1; // s
+    // Drive health is checked every this many ticks, 10 Hz like on the robot.
+    public static final int kHealthTicks = 5;
+    // The CAN bus runs at 1 Mbit/s. Every frame to or from a Spark MAX has a 29 bit ID and 8 data bytes,
+    // 131 bits with the gap after it, plus a few stuff bits.
+    public static final double kBusBitRate = 1e6; // bit/s
+    public static final double kBitsPerFrame = 135;
+    // Most of the bus the drive motors may take, leaving the rest for everything else on it.
+    public static final double kMaxBusLoad = 0.7;
+
+    // Steering gains to simulate with; on the robot they come from the dashboard.
+    public static final double kSteeringP = 500, kSteeringI = 0, kSteeringD = 0;
+
+    // A 90 degree turn takes about 1.5 s, the steering output is capped at 100 rpm.
+    public static final Scenario[] kScenarios = {
+        new Scenario("steer-90", 4, JoystickScript.steps(new double[] { 0.5, 0.6, 0, 0 }), 0.5, 2, 0.02),
+        new Scenario("reverse", 4, JoystickScript.steps(new double[] { 0.5, 0, -0.8, 0 }, new double[] { 2, 0, 0.8, 0 }),
+                2, 0.5, 0.02),
+        new Scenario("spin", 3, JoystickScript.steps(new double[] { 0.5, 0, 0, 0.6 }), 0.5, 1, 0.02),
+        new Scenario("arc", 4, JoystickScript.steps(new double[] { 0.5, 0.5, -0.5, 0.4 }), 0.5, 1.5, 0.02),
+    };
+
+    /**
+     * What a run measured.
+     */
+    public static class Result {
+        public final Scenario scenario;
+        /** Time from the step until the steering stayed settled, in seconds, or NaN if it never did. */
+        public final double settlingTime;
+        /** Largest steering error over the last {@link #kTrackingWindow} of the run, in radians. */
+        public final double trackingError;
+        /** RMS steering error over the whole run, in radians. */
+        public final double rmsError;
+        /** How far the worst module went past its setpoint after the step, as a fraction of the step. */
+        public final double overshoot;
+        /** Pose from odometry at the end, {@code {x, y, heading}}. */
+        public final double[] pose;
+        /** Hash of the final state, equal between runs only if they were identical. */
+        public final long checksum;
+        public final int ticks;
+        public final long wallNanos;
+        /** Time spent in {@link SwerveDrive#runSteering()} per steering step, in microseconds. */
+        public final long latencyP50, latencyP99, latencyMax;
+        /** Health status of every module at the end, in {@code ModuleID} order, see {@link DrivetrainHealthMonitor}. */
+        public final int[] health;
+        /** When a health flag was first raised, in seconds, or NaN if never. */
+        public final double unhealthyTime;
+        /** Fraction of the bus taken by the drive motors' frames, see {@link #kBitsPerFrame}. */
+        public final double busLoad;
+
+        Result(Scenario scenario, double settlingTime, double trackingError, double rmsError, double overshoot,
+                double[] pose, long checksum, int ticks, long wallNanos, LatencyHistogram latency, int[] health,
+                double unhealthyTime, double busLoad) {
+            this.scenario = scenario;
+            this.settlingTime = settlingTime;
+            this.trackingError = trackingError;
+            this.rmsError = rmsError;
+            this.overshoot = overshoot;
+            this.pose = pose;
+            this.checksum = checksum;
+            this.ticks = ticks;
+            this.wallNanos = wallNanos;
+            latencyP50 = latency.getPercentile(50);
+            latencyP99 = latency.getPercentile(99);
+            latencyMax = latency.getMax();
+            this.health = health;
+            this.unhealthyTime = unhealthyTime;
+            this.busLoad = busLoad;
+        }
+
+        /**
+         * @return Whether the run settled and tracked within the scenario's limits.
+         */
+        public boolean passed() {
+            return settlingTime <= scenario.maxSettlingTime && trackingError <= scenario.maxTrackingError;
+        }
+
+        /**
+         * @return Simulated ticks per second of wall time.
+         */
+        public double getTicksPerSecond() {
+            return ticks / (wallNanos * 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %s  settle %.3f s (max %.3f)  tracking %.4f rad (max %.4f)  rms %.4f rad  "
+                    + "overshoot %.1f%%  pose (%.2f, %.2f, %.3f)  bus %.0f%%  %.0f ticks/s  steering p50 %d us p99 %d us max %d us",
+                    scenario.name, passed() ? "PASS" : "FAIL", settlingTime, scenario.maxSettlingTime,
+                    trackingError, scenario.maxTrackingError, rmsError, overshoot * 100, pose[0], pose[1], pose[2],
+                    busLoad * 100, getTicksPerSecond(), latencyP50, latencyP99, latencyMax);
+        }
+    }
+
+    private final SimClock clock = new SimClock();
+    private final SwerveDrive drive;
+    private final ModuleID[] ids = ModuleID.values();
+    private final DiffSwerveModuleSpark[] modules = new DiffSwerveModuleSpark[ids.length];
+    private final SimSparkMax[] motors = new SimSparkMax[ids.length * 2];
+    private final DrivetrainHealthMonitor monitor;
+
+    static {
+        // Before anything registers.
+        Telemetry.setHeadless(true);
+        TuningRegistry.setHeadless(true);
+    }
+
+    // Per run state, reused.
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final double[] axes = new double[3];
+    private final Filter[] axisFilters = { new MedianFilter(3), new MedianFilter(3), new MedianFilter(3) };
+    private final double[] stepError = new double[ids.length];
+
+    public SimHarness() {
+        drive = new SwerveDrive(id -> {
+            SimSparkMax motor1 = new SimSparkMax(id + "_MOTOR_1", clock);
+            SimSparkMax motor2 = new SimSparkMax(id + "_MOTOR_2", clock);
+            motors[id.ordinal() * 2] = motor1;
+            motors[id.ordinal() * 2 + 1] = motor2;
+            return new DiffSwerveModuleSpark(id, motor1, motor2);
+        }, clock);
+        drive.setVelocityFilter(() -> new MedianFilter(3));
+        drive.setSteeringRate(kSteeringRate);
+        for(int i = 0; i < ids.length; i++) {
+            modules[i] = drive.getModule(ids[i]);
+        }
+        monitor = new DrivetrainHealthMonitor(drive, clock);
+    }
+
+    /**
+     * @return Health monitor of the simulated drivetrain, checked every {@link #kHealthTicks} ticks.
+     */
+    public DrivetrainHealthMonitor getHealthMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Runs a scenario with the nominal gains and conditions.
+     * @param scenario Scenario to run.
+     * @return What the run measured.
+     */
+    public Result run(Scenario scenario) {
+        return run(scenario, SimVariant.kNominal);
+    }
+
+    /**
+     * Runs a scenario from rest.
+     * @param scenario Scenario to run.
+     * @param variant Gains and conditions to run it with.
+     * @return What the run measured.
+     */
+    public Result run(Scenario scenario, SimVariant variant) {
+        reset(variant);
+
+        long stepMicros = Math.round(1e6 / kSteeringRate);
+        int ticks = (int) Math.round(scenario.duration / kPeriod);
+        double lastUnsettled = scenario.stepTime;
+        double trackingError = 0;
+        double sumSquares = 0;
+        double overshoot = 0;
+        boolean stepSeen = false;
+        boolean faultInjected = variant.fault == null;
+        double unhealthyTime = Double.NaN;
+
+        long start = System.nanoTime();
+        for(int tick = 1; tick <= ticks; tick++) {
+            double time = tick * kPeriod;
+            for(int step = 1; step <= kSteeringSteps; step++) {
+                clock.advance(stepMicros);
+
+                // The bus sags with the current all the motors drew over the last step.
+                if(variant.batteryResistance > 0) {
+                    double current = 0;
+                    for(SimSparkMax motor : motors)
+                        current += motor.getOutputCurrent();
+                    double volts = variant.batteryVoltage - variant.batteryResistance * current;
+                    for(SimSparkMax motor : motors)
+                        motor.setBusVoltage(volts);
+                }
+
+                // The main loop publishes new setpoints once a tick, before the steering runs.
+                if(step == kSteeringSteps) {
+                    if(!faultInjected && time >= variant.faultTime) {
+                        inject(motors[variant.faultMotor], variant.fault);
+                        faultInjected = true;
+                    }
+
+                    scenario.script.get(time, axes);
+                    for(int i = 0; i < axes.length; i++)
+                        axes[i] = axisFilters[i].calculate(axes[i]);
+                    Vector2d output = MathUtils.adjustDeadband(axes[0], axes[1], kDeadband, true, false);
+                    double rotation = MathUtils.adjustDeadband(axes[2], kDeadband.getX());
+                    drive.drive(0, rotation, output.getX(), output.getY());
+                }
+
+                long steeringStart = System.nanoTime();
+                drive.runSteering();
+                latency.recordNanos(System.nanoTime() - steeringStart);
+            }
+
+            double error = 0;
+            for(int i = 0; i < modules.length; i++) {
+                double moduleError = modules[i].getSteeringError();
+                error = Math.max(error, Math.abs(moduleError));
+                sumSquares += moduleError * moduleError;
+
+                if(time < scenario.stepTime)
+                    continue;
+                if(!stepSeen) {
+                    stepError[i] = moduleError;
+                } else if(Math.abs(stepError[i]) > kSettleBand) {
+                    // Past the setpoint means the error changed sign.
+                    overshoot = Math.max(overshoot, -moduleError / stepError[i]);
+                }
+            }
+            if(time >= scenario.stepTime) {
+                stepSeen = true;
+                if(error > kSettleBand)
+                    lastUnsettled = time;
+            }
+            if(time > scenario.duration - kTrackingWindow)
+                trackingError = Math.max(trackingError, error);
+
+            // The simulated motors aren't thread safe, so on this thread rather than one of its own.
+            if(tick % kHealthTicks == 0) {
+                monitor.check();
+                if(Double.isNaN(unhealthyTime) && !monitor.isHealthy())
+                    unhealthyTime = time;
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        double[] pose = new double[3];
+        drive.getOdometry().getPose(pose);
+        long checksum = 17;
+        for(double value : pose)
+            checksum = checksum * 31 + Double.doubleToLongBits(value);
+        for(DiffSwerveModuleSpark module : modules) {
+            checksum = checksum * 31 + Double.doubleToLongBits(module.getModulePosNative());
+            checksum = checksum * 31 + Double.doubleToLongBits(module.getWheelDistance());
+        }
+
+        int[] health = new int[ids.length];
+        for(int i = 0; i < ids.length; i++)
+            health[i] = monitor.getStatus(ids[i]);
+
+        long frames = 0;
+        for(SimSparkMax motor : motors)
+            frames += motor.getFrameCount();
+        double busLoad = frames * kBitsPerFrame / (ticks * kPeriod * kBusBitRate);
+
+        boolean settled = lastUnsettled < ticks * kPeriod;
+        return new Result(scenario, settled ? lastUnsettled - scenario.stepTime : Double.NaN, trackingError,
+                Math.sqrt(sumSquares / (ticks * modules.length)), overshoot, pose, checksum, ticks, wallNanos, latency,
+                health, unhealthyTime, busLoad);
+    }
+
+    private static void inject(SimSparkMax motor, SimVariant.Fault fault) {
+        switch(fault) {
+        case DISCONNECT:
+            motor.setConnected(false);
+            break;
+        case FREEZE_ENCODER:
+            motor.setEncoderFrozen(true);
+            break;
+        case JAM:
+            motor.setJammed(true);
+            break;
+        }
+    }
+
+    private void reset(SimVariant variant) {
+        for(int i = 0; i < motors.length; i++) {
+            SimSparkMax motor = motors[i];
+            motor.reset();
+            motor.setPIDF(variant.sparkP, SparkConfig.kDefault.i, SparkConfig.kDefault.d, variant.sparkFF);
+            motor.setCanLatency(variant.canLatency);
+            // Every motor gets its own noise, still fixed by the seed.
+            motor.setNoise(variant.positionNoise, variant.velocityNoise, variant.seed * motors.length + i);
+            motor.setBusVoltage(variant.batteryVoltage);
+        }
+        for(DiffSwerveModuleSpark module : modules) {
+            module.setSteeringOutputLimit(variant.steeringLimit);
+        }
+        drive.getSteeringPid().setGains(drive.getSteeringPid().getGains()
+                .withPID(variant.steeringP, variant.steeringI, variant.steeringD));
+        // Steer on the robot's own estimate, not the latency simulated here, which the robot can't know.
+        drive.setCommandLatency(SwerveDrive.kDefaultCommandLatency);
+        drive.reset();
+        for(Filter filter : axisFilters)
+            filter.reset();
+        latency.reset();
+        monitor.reset();
+    }
+
+    public static void main(String... args) {
+        // Same as the robot.
+        FastMath.setEnabled(true);
+
+        SimHarness harness = new SimHarness();
+        for(Scenario scenario : kScenarios) {
+            System.out.println(harness.run(scenario));
+        }
+
+        // Each fault in motor 1 of the first module, once the modules are turning.
+        double faultTime = 1;
+        for(SimVariant.Fault fault : SimVariant.Fault.values()) {
+            Result result = harness.run(kScenarios[0], SimVariant.kNominal.withFault(fault, 0, faultTime));
+            int status = result.health[0];
+            System.out.printf("%-14s %s  detected after %.2f s  %s: %s%n", fault,
+                    (status & fault.healthFlag) != 0 ? "PASS" : "FAIL", result.unhealthyTime - faultTime,
+                    ModuleID.values()[0], DrivetrainHealthMonitor.describe(status));
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package frc.sim;
+
+import java.util.Random;
+
+import com.revrobotics.ControlType;
+import com.revrobotics.CANSparkMax.FaultID;
+
+import frc.maths.MathUtils;
+import frc.subsystems.Motor;
+import frc.util.Clock;
+
+/**
+ * Simulated NEO driven by a Spark MAX.
+ * The motor is modelled as a DC motor turning a fixed inertia, and the closed-loop controller
+ * runs at 1 kHz like the one on the Spark MAX. The model catches up to the clock whenever it is
+ * touched, so it can be driven by a {@link SimClock} faster than real time.
+ * Readings only change when their status frame would have arrived, like on the real bus.
+ * Each reading carries the exact time it was measured, and like on the Spark MAX keeps it while a new
+ * frame brings the same value.
+ * Commands can be delayed to model CAN latency, and readings can carry seeded Gaussian noise.
+ * Faults can be injected to check the health monitor: dropping off the bus, a frozen encoder or a jammed rotor.
+ * Every status frame sent and command received is counted, to measure the load on the bus.
+ * Doesn't use any WPILib or vendor native code, so it runs on any desktop JVM.
+ */
+public class SimSparkMax implements Motor {
+    // NEO motor constants, from the REV datasheet.
+    public static final double kNominalVoltage = 12.0;
+    public static final double kFreeSpeedRPM = 5676;
+    public static final double kStallTorque = 2.6; // Nm
+    public static final double kStallCurrent = 105; // A
+    public static final double kFreeCurrent = 1.8; // A
+
+    private static final double kResistance = kNominalVoltage / kStallCurrent;
+    private static final double kTorqueConstant = kStallTorque / kStallCurrent;
+    private static final double kFreeSpeedRad = kFreeSpeedRPM * 2 * Math.PI / 60;
+    private static final double kBackEmfConstant = (kNominalVoltage - kResistance * kFreeCurrent) / kFreeSpeedRad;
+    private static final double kViscousFriction = kTorqueConstant * kFreeCurrent / kFreeSpeedRad;
+
+    // First order thermal model of the motor, roughly a NEO.
+    public static final double kAmbientTemperature = 25; // C
+    private static final double kHeatCapacity = 300; // J/C
+    private static final double kCoolingTimeConstant = 600; // s
+    // The controller latches a brownout below this.
+    private static final double kBrownoutVoltage = 6.3;
+
+    // The Spark MAX closed loop runs every millisecond.
+    private static final long kStepMicros = 1000;
+    private static final double kStepSeconds = kStepMicros * 1e-6;
+
+    private final String name;
+    private final Clock clock;
+    private long lastUpdate;
+
+    // Plant state. Always in the motor's own direction, inversion is applied at the edges.
+    private double omega; // rad/s
+    private double angle; // rad
+    private double current;
+    private double loadInertia = 0.0005; // kg m^2
+    private double loadTorque;
+    private double busVoltage = kNominalVoltage;
+    private boolean inverted;
+
+    // Status frames, and the readings they last carried.
+    private long status0Period = 10000, status1Period = 20000, status2Period = 50000; // us
+    private long sinceStatus0, sinceStatus1, sinceStatus2;
+    private double frameAppliedOutput, frameVelocity, frameCurrent, framePosition;
+    private long frameVelocityTime, framePositionTime;
+    private double temperature = kAmbientTemperature, frameTemperature = kAmbientTemperature;
+    private short stickyFaults;
+    // Frames on the bus to and from this controller.
+    private long frameCount;
+
+    // Injected faults.
+    private boolean connected = true;
+    private boolean encoderFrozen;
+    private boolean jammed;
+
+    // Controller state.
+    private ControlType controlType = ControlType.kDutyCycle;
+    private double reference;
+    private double arbFeedforward;
+    private double appliedOutput;
+    private double kP, kI, kD, kFF, kIz;
+    private double kMinOutput = -1, kMaxOutput = 1;
+    private double iAccum;
+    private double lastError;
+
+    // Commands on their way over CAN, oldest first.
+    private static final int kMaxPending = 16;
+    private long canLatency; // us
+    private final long[] pendingAt = new long[kMaxPending];
+    private final ControlType[] pendingType = new ControlType[kMaxPending];
+    private final double[] pendingReference = new double[kMaxPending];
+    private final double[] pendingFeedforward = new double[kMaxPending];
+    private int pendingHead, pendingCount;
+
+    // Sensor noise, standard deviations in rotations and rpm.
+    private final Random noise = new Random(0);
+    private double positionNoise, velocityNoise;
+
+    /**
+     * @param name Name of the motor.
+     * @param clock Clock to advance the model with.
+     */
+    public SimSparkMax(String name, Clock clock) {
+        this.name = name;
+        this.clock = clock;
+        lastUpdate = clock.getMicros();
+        frameVelocityTime = lastUpdate;
+        framePositionTime = lastUpdate;
+    }
+
+    /**
+     * Runs the model up to the current time of the clock.
+     */
+    public void update() {
+        long now = clock.getMicros();
+        while(now - lastUpdate >= kStepMicros) {
+            receiveCommands(lastUpdate);
+            step();
+            lastUpdate += kStepMicros;
+        }
+    }
+
+    private void step() {
+        appliedOutput = MathUtils.limit(computeOutput(), 1);
+
+        double voltage = appliedOutput * busVoltage * (inverted ? -1 : 1);
+        current = (voltage - kBackEmfConstant * omega) / kResistance;
+        double torque = kTorqueConstant * current - kViscousFriction * omega - loadTorque;
+
+        // Semi-implicit Euler, stable as long as the mechanical time constant is above a millisecond.
+        omega = jammed ? 0 : omega + torque / loadInertia * kStepSeconds;
+        angle += omega * kStepSeconds;
+        temperature += (current * current * kResistance / kHeatCapacity
+                - (temperature - kAmbientTemperature) / kCoolingTimeConstant) * kStepSeconds;
+        if(busVoltage < kBrownoutVoltage)
+            stickyFaults |= 1 << FaultID.kBrownout.ordinal();
+
+        // Nothing new comes in from a controller that is off the bus.
+        if(!connected)
+            return;
+
+        sinceStatus0 += kStepMicros;
+        sinceStatus1 += kStepMicros;
+        sinceStatus2 += kStepMicros;
+        if(sinceStatus0 >= status0Period) {
+            frameAppliedOutput = appliedOutput;
+            sinceStatus0 = 0;
+            frameCount++;
+        }
+        if(sinceStatus1 >= status1Period) {
+            if(!encoderFrozen) {
+                double velocity = velocityRPM() + (velocityNoise > 0 ? noise.nextGaussian() * velocityNoise : 0);
+                // Like SparkMax, which can only tell a new frame by its reading changing.
+                if(velocity != frameVelocity)
+                    frameVelocityTime = lastUpdate + kStepMicros;
+                frameVelocity = velocity;
+            }
+            frameCurrent = Math.abs(current);
+            frameTemperature = temperature;
+            sinceStatus1 = 0;
+            frameCount++;
+        }
+        if(sinceStatus2 >= status2Period) {
+            if(!encoderFrozen) {
+                double position = positionRotations() + (positionNoise > 0 ? noise.nextGaussian() * positionNoise : 0);
+                if(position != framePosition)
+                    framePositionTime = lastUpdate + kStepMicros;
+                framePosition = position;
+            }
+            sinceStatus2 = 0;
+            frameCount++;
+        }
+    }
+
+    private double computeOutput() {
+        switch(controlType) {
+            case kDutyCycle:
+                return reference;
+            case kVoltage:
+                return reference / busVoltage;
+            case kVelocity:
+            case kSmartVelocity:
+                return closedLoop(velocityRPM());
+            case kPosition:
+            case kSmartMotion:
+                return closedLoop(positionRotations());
+            default:
+                return 0;
+        }
+    }
+
+    private double closedLoop(double processVariable) {
+        double error = reference - processVariable;
+        if(kIz != 0 && Math.abs(error) > kIz)
+            iAccum = 0;
+        else
+            iAccum += error;
+
+        double output = kP * error + kI * iAccum + kD * (error - lastError) + kFF * reference + arbFeedforward;
+        lastError = error;
+
+        if(output > kMaxOutput)
+            return kMaxOutput;
+        if(output < kMinOutput)
+            return kMinOutput;
+        return output;
+    }
+
+    private double velocityRPM() {
+        return omega * 60 / (2 * Math.PI) * (inverted ? -1 : 1);
+    }
+
+    private double positionRotations() {
+        return angle / (2 * Math.PI) * (inverted ? -1 : 1);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void set(double speed) {
+        setReference(speed, ControlType.kDutyCycle);
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+        update();
+        inverted = isInverted;
+    }
+
+    @Override
+    public void setReference(double value, ControlType type) {
+        setReference(value, type, 0);
+    }
+
+    @Override
+    public void setReference(double value, ControlType type, double arbFeedforward) {
+        update();
+        if(!connected)
+            return;
+        frameCount++;
+        if(canLatency <= 0) {
+            applyCommand(value, type, arbFeedforward);
+            return;
+        }
+        if(pendingCount == kMaxPending) {
+            // Too many in flight, the oldest one arrives now.
+            receiveOldest();
+        }
+        int slot = (pendingHead + pendingCount) % kMaxPending;
+        pendingAt[slot] = clock.getMicros() + canLatency;
+        pendingType[slot] = type;
+        pendingReference[slot] = value;
+        pendingFeedforward[slot] = arbFeedforward;
+        pendingCount++;
+    }
+
+    // Applies the commands that have arrived by the given time.
+    private void receiveCommands(long time) {
+        while(pendingCount > 0 && pendingAt[pendingHead] <= time) {
+            receiveOldest();
+        }
+    }
+
+    private void receiveOldest() {
+        applyCommand(pendingReference[pendingHead], pendingType[pendingHead], pendingFeedforward[pendingHead]);
+        pendingType[pendingHead] = null;
+        pendingHead = (pendingHead + 1) % kMaxPending;
+        pendingCount--;
+    }
+
+    private void applyCommand(double value, ControlType type, double arbFeedforward) {
+        if(type != controlType) {
+            iAccum = 0;
+            lastError = 0;
+        }
+        controlType = type;
+        reference = value;
+        this.arbFeedforward = arbFeedforward;
+    }
+
+    @Override
+    public void setPIDF(double p, double i, double d, double ff) {
+        update();
+        kP = p;
+        kI = i;
+        kD = d;
+        kFF = ff;
+    }
+
+    @Override
+    public double[] getPIDF() {
+        return new double[] { kP, kI, kD, kFF };
+    }
+
+    @Override
+    public void setIZone(double iZone) {
+        update();
+        kIz = iZone;
+    }
+
+    @Override
+    public void setOutputRange(double min, double max) {
+        update();
+        kMinOutput = min;
+        kMaxOutput = max;
+    }
+
+    @Override
+    public void setStatusFramePeriods(int status0Ms, int status1Ms, int status2Ms) {
+        update();
+        status0Period = status0Ms * 1000L;
+        status1Period = status1Ms * 1000L;
+        status2Period = status2Ms * 1000L;
+    }
+
+    @Override
+    public double getEncPosition() {
+        update();
+        return framePosition;
+    }
+
+    @Override
+    public double getEncVelocity() {
+        update();
+        return frameVelocity;
+    }
+
+    @Override
+    public long getEncPositionTime() {
+        update();
+        return framePositionTime;
+    }
+
+    @Override
+    public long getEncVelocityTime() {
+        update();
+        return frameVelocityTime;
+    }
+
+    @Override
+    public double getAppliedOutput() {
+        update();
+        return frameAppliedOutput;
+    }
+
+    @Override
+    public void process() {
+        update();
+    }
+
+    @Override
+    public double getOutputCurrent() {
+        update();
+        return frameCurrent;
+    }
+
+    @Override
+    public double getBusVoltage() {
+        return busVoltage;
+    }
+
+    @Override
+    public double getMotorTemperature() {
+        update();
+        return frameTemperature;
+    }
+
+    @Override
+    public short getStickyFaults() {
+        update();
+        return stickyFaults;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return Status frames sent and commands received since construction or the last {@link #reset()}.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Drops the controller off the bus or brings it back. While off, readings stop updating, commands
+     * are lost, and the controller stops the motor like a real one does when CAN times out.
+     * @param connected Whether the controller is on the bus.
+     */
+    public void setConnected(boolean connected) {
+        update();
+        if(!connected) {
+            dropPending();
+            applyCommand(0, ControlType.kDutyCycle, 0);
+        }
+        this.connected = connected;
+    }
+
+    /**
+     * @param frozen Whether the position and velocity readings are stuck at their last values, like
+     *        with a broken encoder cable. The controller's own loop still sees the real motor.
+     */
+    public void setEncoderFrozen(boolean frozen) {
+        update();
+        encoderFrozen = frozen;
+    }
+
+    /**
+     * @param jammed Whether the rotor is locked, so the motor stalls whatever it's told.
+     */
+    public void setJammed(boolean jammed) {
+        update();
+        this.jammed = jammed;
+    }
+
+    /**
+     * @param faults Sticky faults to latch, as {@link #getStickyFaults()} reports them.
+     */
+    public void injectStickyFaults(short faults) {
+        update();
+        stickyFaults |= faults;
+    }
+
+    /**
+     * @param volts Bus voltage to drive the motor with, for example to model battery sag.
+     */
+    public void setBusVoltage(double volts) {
+        update();
+        busVoltage = volts;
+    }
+
+    /**
+     * @param inertia Inertia of the load as seen by the motor shaft in kg m^2.
+     */
+    public void setLoadInertia(double inertia) {
+        update();
+        loadInertia = inertia;
+    }
+
+    /**
+     * @param torque Constant torque opposing the motor in Nm.
+     */
+    public void setLoadTorque(double torque) {
+        update();
+        loadTorque = torque;
+    }
+
+    /**
+     * @param micros Delay from a command being sent to the controller acting on it, in microseconds.
+     */
+    public void setCanLatency(long micros) {
+        update();
+        canLatency = micros;
+    }
+
+    /**
+     * Adds Gaussian noise to the position and velocity readings.
+     * @param positionStdDev Standard deviation of the position noise in rotations.
+     * @param velocityStdDev Standard deviation of the velocity noise in rpm.
+     * @param seed Seed for the noise, so runs repeat exactly.
+     */
+    public void setNoise(double positionStdDev, double velocityStdDev, long seed) {
+        update();
+        positionNoise = positionStdDev;
+        velocityNoise = velocityStdDev;
+        noise.setSeed(seed);
+    }
+
+    /**
+     * Puts the motor back at rest at position zero and ambient temperature, with the controller idle,
+     * nothing in flight, no faults and no frames counted, as if just constructed. Gains, limits, frame periods, load,
+     * latency and noise settings are kept.
+     */
+    public void reset() {
+        lastUpdate = clock.getMicros();
+        omega = 0;
+        angle = 0;
+        current = 0;
+        sinceStatus0 = 0;
+        sinceStatus1 = 0;
+        sinceStatus2 = 0;
+        frameAppliedOutput = 0;
+        frameVelocity = 0;
+        frameCurrent = 0;
+        framePosition = 0;
+        frameVelocityTime = lastUpdate;
+        framePositionTime = lastUpdate;
+        temperature = kAmbientTemperature;
+        frameTemperature = kAmbientTemperature;
+        stickyFaults = 0;
+        frameCount = 0;
+        connected = true;
+        encoderFrozen = false;
+        jammed = false;
+        controlType = ControlType.kDutyCycle;
+        reference = 0;
+        arbFeedforward = 0;
+        appliedOutput = 0;
+        iAccum = 0;
+        lastError = 0;
+        dropPending();
+    }
+
+    private void dropPending() {
+        while(pendingCount > 0) {
+            pendingType[pendingHead] = null;
+            pendingHead = (pendingHead + 1) % kMaxPending;
+            pendingCount--;
+        }
+        pendingHead = 0;
+    }
+}
@@ -0,0 +1,136 @@
+package frc.sim;
+
+import frc.subsystems.DiffSwerveModuleSpark;
+import frc.subsystems.DrivetrainHealthMonitor;
+import frc.subsystems.SparkConfig;
+import frc.subsystems.DiffSwerveModule.ModuleID;
+
+/**
+ * Gains and conditions to simulate with, see {@link SimHarness#run(Scenario, SimVariant)}.
+ * Immutable; the {@code with} methods return a changed copy.
+ */
+public final class SimVariant {
+    /** Gains from {@link SimHarness}, the default Spark config, and an ideal bus and battery. */
+    public static final SimVariant kNominal = new SimVariant(SimHarness.kSteeringP, SimHarness.kSteeringI, SimHarness.kSteeringD,
+            SparkConfig.kDefault.p, SparkConfig.kDefault.ff, DiffSwerveModuleSpark.kSteeringOutputLimit, 0, 0, 0,
+            SimSparkMax.kNominalVoltage, 0, 0, null, 0, 0);
+
+    /**
+     * Something that can go wrong with a motor partway through a run.
+     */
+    public enum Fault {
+        /** The controller drops off the bus, see {@link SimSparkMax#setConnected(boolean)}. */
+        DISCONNECT(DrivetrainHealthMonitor.kDisconnected),
+        /** The encoder stops updating, see {@link SimSparkMax#setEncoderFrozen(boolean)}. */
+        FREEZE_ENCODER(DrivetrainHealthMonitor.kEncoderFrozen),
+        /** The motor seizes, see {@link SimSparkMax#setJammed(boolean)}. */
+        JAM(DrivetrainHealthMonitor.kStall);
+
+        /** Motor flag the {@link DrivetrainHealthMonitor} should raise for it. */
+        public final int healthFlag;
+
+        Fault(int healthFlag) {
+            this.healthFlag = healthFlag;
+        }
+    }
+
+    // Steering PID, per steering tick.
+    public final double steeringP, steeringI, steeringD;
+    // Spark MAX velocity loop.
+    public final double sparkP, sparkFF;
+    /** Cap on the steering output, in rpm. */
+    public final double steeringLimit;
+    /** Delay from sending a command to the controller acting on it, in microseconds. */
+    public final long canLatency;
+    /** Standard deviation of the encoder noise, in rotations and rpm. */
+    public final double positionNoise, velocityNoise;
+    /** Open circuit battery voltage and internal resistance in ohms; the bus sags with the total current. */
+    public final double batteryVoltage, batteryResistance;
+    /** Seed for the noise. */
+    public final long seed;
+    /** Fault to inject, or null for none. */
+    public final Fault fault;
+    /** Motor to inject it in, 0 for motor 1 of the first module up to 7 for motor 2 of the last. */
+    public final int faultMotor;
+    /** When to inject it, in seconds from the start of the run. */
+    public final double faultTime;
+
+    private SimVariant(double steeringP, double steeringI, double steeringD, double sparkP, double sparkFF, double steeringLimit,
+            long canLatency, double positionNoise, double velocityNoise, double batteryVoltage, double batteryResistance, long seed,
+            Fault fault, int faultMotor, double faultTime) {
+        this.steeringP = steeringP;
+        this.steeringI = steeringI;
+        this.steeringD = steeringD;
+        this.sparkP = sparkP;
+        this.sparkFF = sparkFF;
+        this.steeringLimit = steeringLimit;
+        this.canLatency = canLatency;
+        this.positionNoise = positionNoise;
+        this.velocityNoise = velocityNoise;
+        this.batteryVoltage = batteryVoltage;
+        this.batteryResistance = batteryResistance;
+        this.seed = seed;
+        this.fault = fault;
+        this.faultMotor = faultMotor;
+        this.faultTime = faultTime;
+    }
+
+    public SimVariant withSteeringPID(double p, double i, double d) {
+        return new SimVariant(p, i, d, sparkP, sparkFF, steeringLimit, canLatency, positionNoise, velocityNoise,
+                batteryVoltage, batteryResistance, seed, fault, faultMotor, faultTime);
+    }
+
+    public SimVariant withSpark(double p, double ff) {
+        return new SimVariant(steeringP, steeringI, steeringD, p, ff, steeringLimit, canLatency, positionNoise, velocityNoise,
+                batteryVoltage, batteryResistance, seed, fault, faultMotor, faultTime);
+    }
+
+    public SimVariant withSteeringLimit(double limit) {
+        return new SimVariant(steeringP, steeringI, steeringD, sparkP, sparkFF, limit, canLatency, positionNoise, velocityNoise,
+                batteryVoltage, batteryResistance, seed, fault, faultMotor, faultTime);
+    }
+
+    public SimVariant withCanLatency(long micros) {
+        return new SimVariant(steeringP, steeringI, steeringD, sparkP, sparkFF, steeringLimit, micros, positionNoise, velocityNoise,
+                batteryVoltage, batteryResistance, seed, fault, faultMotor, faultTime);
+    }
+
+    /**
+     * @param positionStdDev Standard deviation of the position noise in rotations.
+     * @param velocityStdDev Standard deviation of the velocity noise in rpm.
+     * @param seed Seed for the noise.
+     */
+    public SimVariant withNoise(double positionStdDev, double velocityStdDev, long seed) {
+        return new SimVariant(steeringP, steeringI, steeringD, sparkP, sparkFF, steeringLimit, canLatency, positionStdDev,
+                velocityStdDev, batteryVoltage, batteryResistance, seed, fault, faultMotor, faultTime);
+    }
+
+    /**
+     * @param voltage Open circuit voltage.
+     * @param resistance Internal resistance in ohms, 0 for no sag.
+     */
+    public SimVariant withBattery(double voltage, double resistance) {
+        return new SimVariant(steeringP, steeringI, steeringD, sparkP, sparkFF, steeringLimit, canLatency, positionNoise,
+                velocityNoise, voltage, resistance, seed, fault, faultMotor, faultTime);
+    }
+
+    /**
+     * @param fault Fault to inject, or null for none.
+     * @param motor Motor to inject it in, 0 to 7 in {@code ModuleID} order, motor 1 first.
+     * @param time When to inject it, in seconds from the start of the run.
+     */
+    public SimVariant withFault(Fault fault, int motor, double time) {
+        if(motor < 0 || motor >= ModuleID.values().length * 2)
+            throw new IllegalArgumentException("No motor " + motor);
+        return new SimVariant(steeringP, steeringI, steeringD, sparkP, sparkFF, steeringLimit, canLatency, positionNoise,
+                velocityNoise, batteryVoltage, batteryResistance, seed, fault, motor, time);
+    }
+
+    /**
+     * @return The gains only, without the conditions, for grouping results.
+     */
+    public String describeGains() {
+        return String.format("steer P=%g I=%g D=%g limit=%g  spark P=%g FF=%g",
+                steeringP, steeringI, steeringD, steeringLimit, sparkP, sparkFF);
+    }
+}
@@ -5,7 +5,6 @@ import frc.maths.Vector2d;
 import static frc.robot.RobotMap.*;
 
 import com.revrobotics.ControlType;
-import com.revrobotics.CANPIDController.ArbFFUnits;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
@@ -15,45 +14,56 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 public class DiffSwerveModule {
 
     public enum ModuleID {
-        FR, FL, BR, BL;
+        FR(kFR_MOTOR_1, kFR_MOTOR_2, kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0),
+        FL(kFL_MOTOR_1, kFL_MOTOR_2, -kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0),
+        BR(kBR_MOTOR_1, kBR_MOTOR_2, kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0),
+        BL(kBL_MOTOR_1, kBL_MOTOR_2, -kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0);
+
+        /** CAN IDs of the two motors in the module. */
+        public final int motor1ID, motor2ID;
+
+        /** Position of the module relative to the center of the robot, in inches. */
+        public final double x, y;
+
+        ModuleID(int motor1ID, int motor2ID, double x, double y) {
+            this.motor1ID = motor1ID;
+            this.motor2ID = motor2ID;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * @return Position vector of the module relative to the center of the robot.
+         */
+        public Vector2d getPosVec() {
+            return new Vector2d(x, y);
+        }
     }
 
     private Vector2d positionVec;
 
-    private SparkMax motor1;
-    private SparkMax motor2;
+    private Motor motor1;
+    private Motor motor2;
 
     private ModuleID moduleID;
 
     public static final int kSteeringCountsPerRev = 5;
 
     public DiffSwerveModule(ModuleID id) {
+        this(id, new SparkMax(id + "_MOTOR_1", id.motor1ID), new SparkMax(id + "_MOTOR_2", id.motor2ID));
+    }
+
+    /**
+     * Creates a module driven by the given motors, for example simulated ones.
+     * @param id Position of the module on the robot.
+     * @param motor1 First motor of the differential.
+     * @param motor2 Second motor of the differential.
+     */
+    public DiffSwerveModule(ModuleID id, Motor motor1, Motor motor2) {
         moduleID = id;
-        switch(id) {
-            case FR:
-                positionVec = new Vector2d(kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("FR_MOTOR_1", kFR_MOTOR_1);
-                motor2 = new SparkMax("FR_MOTOR_2", kFR_MOTOR_2);
-                break;
-            case FL:
-                positionVec = new Vector2d(-kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("FL_MOTOR_1", kFL_MOTOR_1);
-                motor2 = new SparkMax("FL_MOTOR_2", kFL_MOTOR_2);
-                break;
-            case BR:
-                positionVec = new Vector2d(kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("BR_MOTOR_1", kBR_MOTOR_1);
-                motor2 = new SparkMax("BR_MOTOR_2", kBR_MOTOR_2);
-                break;
-            case BL:
-                positionVec = new Vector2d(-kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("BL_MOTOR_1", kBL_MOTOR_1);
-                motor2 = new SparkMax("BL_MOTOR_2", kBL_MOTOR_2);
-                break;
-            default:
-                System.out.println("ERROR: Swerve module not found!");
-                break;
-        }
+        positionVec = id.getPosVec();
+        this.motor1 = motor1;
+        this.motor2 = motor2;
 
         // Set inverted status. Probably won't change any of these.
         motor1.setInverted(false);
@@ -123,9 +133,9 @@ public class DiffSwerveModule {
     public void setReference() {
         double ff = SmartDashboard.getNumber("arbFeedForward", 0);
         double motor1setPoint = SmartDashboard.getNumber("FR_MOTOR_1 Set Velocity", 0);
-        motor1.pidController.setReference(100, ControlType.kVelocity, 0, ff, ArbFFUnits.kPercentOut);
-        //motor2.pidController.setReference(motor1setPoint, ControlType.kSmartVelocity, 0);
-        //motor1.pidController.setReference(motor1setPoint, ControlType.kSmartMotion);
+        motor1.setReference(100, ControlType.kVelocity, ff);
+        //motor2.setReference(motor1setPoint, ControlType.kSmartVelocity);
+        //motor1.setReference(motor1setPoint, ControlType.kSmartMotion);
     }
 
     public void updateTelemetry() {
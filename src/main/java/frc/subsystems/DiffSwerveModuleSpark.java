@@ -2,68 +2,296 @@ package frc.subsystems;
 
 import com.revrobotics.ControlType;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.maths.DifferentialModuleKinematics;
+import frc.maths.LatencyPredictor;
 import frc.maths.MathUtils;
-import frc.maths.MiniPID;
+import frc.maths.PidBank;
+import frc.maths.SwerveUtils;
 import frc.maths.Vector2d;
+import frc.maths.filter.Filter;
 import frc.subsystems.DiffSwerveModule.ModuleID;
-import static frc.robot.RobotMap.*;
+import frc.util.Clock;
+import frc.util.FlightLogger;
+import frc.util.Telemetry;
+import frc.util.FlightLogger.RecordType;
+import frc.util.TunableNumber;
+import frc.util.TuningRegistry;
 
 /**
  * DiffSwerveModuleSpark
  */
 //TODO: figure out velocity of the motor.
 public class DiffSwerveModuleSpark {
-    private SparkMax motor1;
-    private SparkMax motor2;
+    private Motor motor1;
+    private Motor motor2;
     private Vector2d positionVec;
-    private MiniPID miniPID;
+    // Steering controller, either shared with the other modules or this module's own.
+    private PidBank steeringPid;
+    private int pidIndex;
+    private ModuleID moduleID;
+    private int positionKey;
 
-    // Number of encoder counts per revolution of the module.
-    public static final int kModuleCountsPerRev = 5;
+    // Setpoints worked out by calculate(), waiting to be written.
+    private double motor1Setpoint, motor2Setpoint;
+    private final double[] motorSetpoints = new double[2];
+
+    // Steering feedforward from how fast the setpoint is moving, in rpm like the steering PID output.
+    private double steeringFeedforward;
+    // The commanded angle is compared as given; the optimized setpoint moves by a few ulps with the module.
+    private double lastAngle;
+    private double lastAngleSetpoint;
+    private long lastSetpointChange = -1;
+    private double heldFeedforward;
+
+    // Inputs of the last calculate() after optimizing, kept for logging.
+    private double angleSetpoint, speedSetpoint;
+    private final double[] optimized = new double[2];
+
+    // Sensor readings from the last readSensors(). Every reader in a tick shares these instead of
+    // going back to the motor controller. Volatile because telemetry reads them from another thread.
+    private volatile double motor1Position, motor2Position;
+    private volatile double motor1Velocity, motor2Velocity;
+    // When each reading was measured, in us. The two motors' frames come in at different times.
+    private long motor1PositionTime, motor2PositionTime;
+    private long motor1VelocityTime, motor2VelocityTime;
+    // Both positions brought to the later of their times, averaged.
+    private volatile double modulePosition;
+    private long modulePositionTime;
+    private final LatencyPredictor predictor = new LatencyPredictor(kMaxPrediction, kVelocitySamplePeriod);
+    // Optional filters on each motor's velocity, run once per new reading, and when each last ran in us.
+    private Filter motor1VelocityFilter, motor2VelocityFilter;
+    private long motor1Filtered, motor2Filtered;
+
+    // Gearing of the differential.
+    // Motor rotations, both motors together, per revolution of the module.
+    public static final double kAzimuthReduction = 5;
+    // Motor rotations, in opposite directions, per rotation of the 3 inch wheel.
+    public static final double kDriveReduction = 10;
+    public static final double kWheelDiameter = 3; // in
+    // Wheel travel per module revolution with both motors turning together. The bevel gears on this
+    // module cancel out, so there is none.
+    public static final double kWheelCoupling = 0; // in
+
+    // Number of encoder counts per revolution of the module. The native unit is the average rotation of
+    // the two motors, so this is the azimuth reduction.
+    public static final double kModuleCountsPerRev = kAzimuthReduction;
+
+    // Wheel travel per motor rotation when the motors turn in opposite directions.
+    public static final double kWheelInchesPerMotorRotation = kWheelDiameter * Math.PI / kDriveReduction;
+
+    /** How the two motors combine into wheel speed and module rotation. */
+    public static final DifferentialModuleKinematics kKinematics =
+            new DifferentialModuleKinematics(kAzimuthReduction, kWheelInchesPerMotorRotation, kWheelCoupling);
+
+    // Steering setpoints that stop changing for this long are held, in us.
+    private static final long kFeedforwardHold = 50000;
+
+    // Status frame periods in ms. Both motors steer and drive, so both need fresh position (status 2)
+    // for the steering task and velocity (status 1) for the drive. Faults and applied output (status 0)
+    // aren't needed quickly. Position comes as often as the steering task runs, see Robot. Together with
+    // the steering commands, eight motors take about 4400 frames/s, 59% of the bus as SimHarness measures it.
+    public static final int kStatus0PeriodMs = 20;
+    public static final int kStatus1PeriodMs = 10;
+    public static final int kStatus2PeriodMs = 5;
+
+    // Furthest a reading is extrapolated, in us. Much older and it has stopped coming in.
+    public static final long kMaxPrediction = 50000;
+    // A changing velocity comes in every status 1 frame. Allow another frame for when frames and reads
+    // fall; without a new reading by then the velocity has stopped changing.
+    private static final long kVelocityFramePeriod = kStatus1PeriodMs * 1000L;
+    private static final long kVelocitySamplePeriod = 2 * kVelocityFramePeriod;
+
+    // Cap on the steering output, PID and feedforward together, in rpm of both motors together.
+    // Half of it goes on each motor, which turns the module without touching the wheel speed.
+    public static final double kSteeringOutputLimit = 100;
+    private double steeringOutputLimit = kSteeringOutputLimit;
 
     public DiffSwerveModuleSpark(ModuleID id) {
-        switch(id) {
-            case FR:
-                positionVec = new Vector2d(kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("FR_MOTOR_1", kFR_MOTOR_1);
-                motor2 = new SparkMax("FR_MOTOR_2", kFR_MOTOR_2);
-                break;
-            case FL:
-                positionVec = new Vector2d(-kROBOT_WIDTH/2.0, kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("FL_MOTOR_1", kFL_MOTOR_1);
-                motor2 = new SparkMax("FL_MOTOR_2", kFL_MOTOR_2);
-                break;
-            case BR:
-                positionVec = new Vector2d(kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("BR_MOTOR_1", kBR_MOTOR_1);
-                motor2 = new SparkMax("BR_MOTOR_2", kBR_MOTOR_2);
-                break;
-            case BL:
-                positionVec = new Vector2d(-kROBOT_WIDTH/2.0, -kROBOT_LENGTH/2.0);
-                motor1 = new SparkMax("BL_MOTOR_1", kBL_MOTOR_1);
-                motor2 = new SparkMax("BL_MOTOR_2", kBL_MOTOR_2);
-                break;
-            default:
-                System.out.println("ERROR: Swerve module not found!");
-                break;
-        }
+        this(id, new SparkMax(id + "_MOTOR_1", id.motor1ID), new SparkMax(id + "_MOTOR_2", id.motor2ID));
+    }
+
+    /**
+     * Creates a module driven by two Spark MAXes that timestamp their readings with the given clock.
+     * @param id Position of the module on the robot.
+     * @param clock Clock of the drivetrain the module goes in.
+     */
+    public DiffSwerveModuleSpark(ModuleID id, Clock clock) {
+        this(id, new SparkMax(id + "_MOTOR_1", id.motor1ID, clock), new SparkMax(id + "_MOTOR_2", id.motor2ID, clock));
+    }
+
+    /**
+     * Creates a module driven by the given motors, for example simulated ones.
+     * @param id Position of the module on the robot.
+     * @param motor1 First motor of the differential.
+     * @param motor2 Second motor of the differential.
+     */
+    public DiffSwerveModuleSpark(ModuleID id, Motor motor1, Motor motor2) {
+        moduleID = id;
+        positionVec = id.getPosVec();
+        positionKey = Telemetry.register(id + " Module Position Native");
+        this.motor1 = motor1;
+        this.motor2 = motor2;
 
         // Set inverted status. Probably won't change any of these.
         motor1.setInverted(false);
         motor2.setInverted(false);
 
-        miniPID = new MiniPID(0, 0, 0);
+        motor1.setStatusFramePeriods(kStatus0PeriodMs, kStatus1PeriodMs, kStatus2PeriodMs);
+        motor2.setStatusFramePeriods(kStatus0PeriodMs, kStatus1PeriodMs, kStatus2PeriodMs);
+
+    }
+
+    /**
+     * Creates steering controllers for a number of modules. The gains come from the dashboard
+     * ("kP", "kI" and "kD", shared by every module). A change to one of them only changes that gain of
+     * the latest published ones, so code that publishes all three to the bank first and then shows
+     * them on the dashboard never has the bank run a mix of old and new gains.
+     * @param count Number of modules.
+     * @return Steering controllers.
+     */
+    public static PidBank createSteeringPid(int count) {
+        TunableNumber p = TuningRegistry.number("kP", 0);
+        TunableNumber i = TuningRegistry.number("kI", 0);
+        TunableNumber d = TuningRegistry.number("kD", 0);
+        // The module angle wraps every revolution, so always steer the short way.
+        PidBank.Gains gains = new PidBank.Gains(0, 0, 0).withContinuous(kModuleCountsPerRev);
+        PidBank bank = new PidBank(count, gains.withPID(p.get(), i.get(), d.get()));
+
+        p.addListener(() -> bank.updateGains(latest -> latest.withPID(p.get(), latest.i, latest.d)));
+        i.addListener(() -> bank.updateGains(latest -> latest.withPID(latest.p, i.get(), latest.d)));
+        d.addListener(() -> bank.updateGains(latest -> latest.withPID(latest.p, latest.i, d.get())));
+        return bank;
+    }
+
+    /**
+     * Runs the steering with one controller of a shared bank, so all modules can be updated together.
+     * @param bank Steering controllers, for example from {@link #createSteeringPid(int)}.
+     * @param index Controller of this module.
+     */
+    public void useSteeringPid(PidBank bank, int index) {
+        steeringPid = bank;
+        pidIndex = index;
+    }
+
+    /**
+     * Reads the encoders of both motors once, with when each reading was measured. Everything else in
+     * the module uses these readings until the next call, so call this once at the start of every tick.
+     * @param now Current time in microseconds, on the clock the motors timestamp their readings with.
+     */
+    public void readSensors(long now) {
+        motor1Position = motor1.getEncPosition();
+        motor2Position = motor2.getEncPosition();
+        motor1PositionTime = motor1.getEncPositionTime();
+        motor2PositionTime = motor2.getEncPositionTime();
+        double velocity1 = motor1.getEncVelocity();
+        double velocity2 = motor2.getEncVelocity();
+        long velocity1Time = motor1.getEncVelocityTime();
+        long velocity2Time = motor2.getEncVelocityTime();
+        // Reading faster than the status frames come in gives the same reading again; don't filter it twice.
+        // A frame that brings the same reading keeps the old time though, so a reading that hasn't changed
+        // for a frame period is filtered again. Otherwise a motor stopped dead would never reach its filter.
+        if(motor1VelocityFilter == null) {
+            motor1Velocity = velocity1;
+        } else if(velocity1Time != motor1VelocityTime || now - motor1Filtered >= kVelocityFramePeriod) {
+            motor1Velocity = motor1VelocityFilter.calculate(velocity1);
+            motor1Filtered = now;
+        }
+        if(motor2VelocityFilter == null) {
+            motor2Velocity = velocity2;
+        } else if(velocity2Time != motor2VelocityTime || now - motor2Filtered >= kVelocityFramePeriod) {
+            motor2Velocity = motor2VelocityFilter.calculate(velocity2);
+            motor2Filtered = now;
+        }
+        motor1VelocityTime = velocity1Time;
+        motor2VelocityTime = velocity2Time;
+
+        // Move the older position forward to when the newer one was measured before averaging them.
+        modulePositionTime = Math.max(motor1PositionTime, motor2PositionTime);
+        double position1 = motor1Position + motor1Velocity / 60 * age(modulePositionTime, motor1PositionTime);
+        double position2 = motor2Position + motor2Velocity / 60 * age(modulePositionTime, motor2PositionTime);
+        modulePosition = (position1 + position2) / 2;
+
+        long velocityTime = motor1VelocityTime / 2 + motor2VelocityTime / 2;
+        predictor.update(modulePosition, modulePositionTime, getModuleVelocityNative(), velocityTime);
+    }
+
+    private static double age(long time, long measured) {
+        return Math.min(time - measured, kMaxPrediction) * 1e-6;
     }
 
     /**
      * Gets the angular position of the swerve module in native encoder ticks.
      * This measurement is not normalized; see @see getModulePosNativeNormalized() for
      * the normalized version in radians.
+     * Uses the readings from the last {@link #readSensors(long)}, as of {@link #getModulePosTime()}.
      * @return Module position in encoder ticks.
      */
     public double getModulePosNative() {
-        return (motor1.getEncPosition() + motor2.getEncPosition()) / 2;
+        return modulePosition;
+    }
+
+    /**
+     * @return When {@link #getModulePosNative()} was measured, in microseconds on the robot clock.
+     */
+    public long getModulePosTime() {
+        return modulePositionTime;
+    }
+
+    /**
+     * Uses the readings from the last {@link #readSensors(long)}.
+     * @return How fast the module is turning, in native encoder ticks per second.
+     */
+    public double getModuleVelocityNative() {
+        return (motor1Velocity + motor2Velocity) / 2 / 60;
+    }
+
+    /**
+     * Predicts the module position at a later time from the last readings, for example when a
+     * command sent now will take effect. Makes up for the readings being old by the time they're used.
+     * @param now Current time, in microseconds on the robot clock.
+     * @param time Time to predict for, in microseconds on the robot clock.
+     * @return Predicted module position in encoder ticks.
+     */
+    public double getPredictedModulePosNative(long now, long time) {
+        return predictor.predictPosition(now, time);
+    }
+
+    /**
+     * @param now Current time, in microseconds on the robot clock.
+     * @param time Time to predict for, in microseconds on the robot clock.
+     * @return Predicted module velocity in encoder ticks per second.
+     */
+    public double getPredictedModuleVelocityNative(long now, long time) {
+        return predictor.predictVelocity(now, time);
+    }
+
+    /**
+     * Forgets past readings and setpoints, for reusing a module in simulation after its motors were reset.
+     */
+    public void reset() {
+        predictor.reset();
+        lastSetpointChange = -1;
+        heldFeedforward = 0;
+        // So the next frame goes through the filters even if it carries the same timestamp as the last one.
+        motor1Velocity = 0;
+        motor2Velocity = 0;
+        motor1VelocityTime = Long.MIN_VALUE;
+        motor2VelocityTime = Long.MIN_VALUE;
+        if(motor1VelocityFilter != null)
+            motor1VelocityFilter.reset();
+        if(motor2VelocityFilter != null)
+            motor2VelocityFilter.reset();
+    }
+
+    /**
+     * Filters the velocity of each motor before anything in the module uses it.
+     * Each filter sees every status frame once, however often the sensors are read.
+     * @param motor1 Filter for the first motor, or {@code null} for none.
+     * @param motor2 Filter for the second motor, or {@code null} for none. Not the same instance as {@code motor1}.
+     */
+    public void setVelocityFilters(Filter motor1, Filter motor2) {
+        motor1VelocityFilter = motor1;
+        motor2VelocityFilter = motor2;
     }
 
     /**
@@ -86,6 +314,33 @@ public class DiffSwerveModuleSpark {
         return MathUtils.normalizeAngleRad2(getModulePosNative() * 2 * Math.PI / kModuleCountsPerRev);
     }
 
+    /**
+     * Gets the angle of the module in radians, without wrapping, so it keeps counting up as the module spins.
+     * Uses the readings from the last {@link #readSensors(long)}.
+     * @return Module angle in radians.
+     */
+    public double getModuleAngle() {
+        return getModulePosNative() * 2 * Math.PI / kModuleCountsPerRev;
+    }
+
+    /**
+     * Gets how far the wheel has rolled, see {@link DifferentialModuleKinematics#getWheelDistance}.
+     * Uses the readings from the last {@link #readSensors(long)}.
+     * @return Wheel distance in inches.
+     */
+    public double getWheelDistance() {
+        return kKinematics.getWheelDistance(motor1Position, motor2Position);
+    }
+
+    /**
+     * Gets how fast the wheel is rolling, in the motor RPM it would take with the module not turning.
+     * Uses the readings from the last {@link #readSensors(long)}.
+     * @return Wheel velocity in motor RPM.
+     */
+    public double getWheelVelocity() {
+        return kKinematics.getWheelSpeed(motor1Velocity, motor2Velocity) * 60 / kWheelInchesPerMotorRotation;
+    }
+
     /**
      * Sets the angle of the module and the speed of the motors.
      * NOTE: Speed is measured in encoder ticks!
@@ -94,53 +349,177 @@ public class DiffSwerveModuleSpark {
      */
     //TODO: make this a fully featured PID controller.
     public void set(Vector2d vector) {
-        double speed = vector.getMagnitude();
-        double angleSetpoint = vector.getAngle() * kModuleCountsPerRev / (2 * Math.PI);
+        set(vector.getAngle(), vector.getMagnitude());
+    }
+
+    /**
+     * Angle is in radians!
+     */
+    public void set(double angle, double magnitude) {
+        // Only differences of the time are used, and nothing else reads this module's sensors here.
+        readSensors(System.nanoTime() / 1000);
+        calculate(angle, magnitude);
+        write();
+    }
+
+    /**
+     * Runs the steering PID and works out the motor setpoints without sending them.
+     * Uses the readings from the last {@link #readSensors(long)}.
+     * Call {@link #write()} afterwards to send them to the motors.
+     * @param angle Angle setpoint in radians.
+     * @param magnitude Speed setpoint in encoder ticks.
+     */
+    public void calculate(double angle, double magnitude) {
+        if(steeringPid == null)
+            useSteeringPid(createSteeringPid(1), 0);
+        prepare(angle, magnitude);
+        apply(steeringPid.calculate(pidIndex, getModulePosNative(), angleSetpoint));
+    }
 
-        motor1.pidController.setReference(speed, ControlType.kVelocity);
+    /**
+     * First half of {@link #calculate(double, double)}: works out the steering setpoint.
+     * The module never turns more than 90 degrees for a new setpoint; past that it turns to the
+     * opposite angle and drives the wheel backwards instead.
+     * @param angle Angle setpoint in radians.
+     * @param magnitude Speed setpoint in encoder ticks.
+     */
+    void prepare(double angle, double magnitude) {
+        SwerveUtils.optimizeModuleState(angle, magnitude, getModuleAngle(), optimized);
+        speedSetpoint = optimized[1];
+        angleSetpoint = optimized[0] * kModuleCountsPerRev / (2 * Math.PI);
+        steeringFeedforward = 0;
+    }
 
-        double kP = SmartDashboard.getNumber("kP", 0);
-        double kI = SmartDashboard.getNumber("kI", 0);
-        double kD = SmartDashboard.getNumber("kD", 0);
-        
-        miniPID.setPID(kP, kI, kD);
-        double output = miniPID.getOutput(getModulePosNative(), angleSetpoint);
+    /**
+     * Same as {@link #prepare(double, double)}, and works out a steering feedforward from how fast the
+     * setpoint has been moving, so the PID only has to correct what's left. A setpoint that jumps
+     * further than the steering could turn gets no feedforward; that's a step for the PID.
+     * @param angle Angle setpoint in radians.
+     * @param magnitude Speed setpoint in encoder ticks.
+     * @param time Current time in microseconds.
+     */
+    void prepare(double angle, double magnitude, long time) {
+        prepare(angle, magnitude);
+        long sinceChange = time - lastSetpointChange;
+        if(lastSetpointChange >= 0 && angle == lastAngle) {
+            // The setpoint is read more often than it changes; keep the rate it was moving at for a bit.
+            steeringFeedforward = sinceChange <= kFeedforwardHold ? heldFeedforward : 0;
+            return;
+        }
+        heldFeedforward = 0;
+        if(lastSetpointChange >= 0 && sinceChange > 0 && sinceChange <= kFeedforwardHold) {
+            double change = MathUtils.normalizeAngleNative(angleSetpoint - lastAngleSetpoint, kModuleCountsPerRev);
+            // Native ticks are motor rotations, and the steering output turns the module at half its rpm.
+            double feedforward = change / (sinceChange * 1e-6) * 60 * 2;
+            if(Math.abs(feedforward) <= steeringOutputLimit)
+                heldFeedforward = feedforward;
+        }
+        steeringFeedforward = heldFeedforward;
+        lastSetpointChange = time;
+        lastAngle = angle;
+        lastAngleSetpoint = angleSetpoint;
+    }
 
+    /**
+     * Second half of {@link #calculate(double, double)}: works out the motor setpoints from the
+     * module kinematics, so steering doesn't change the wheel speed.
+     * @param steeringOutput Output of the steering PID, in rpm of both motors together.
+     */
+    void apply(double steeringOutput) {
         // Make sure our output isn't TOO extreme.
-        double boundedOutput = MathUtils.limit(output, 100);
+        double boundedOutput = MathUtils.limit(steeringFeedforward + steeringOutput, steeringOutputLimit);
 
-        // Set the second motor to have speed - output.
-        motor2.pidController.setReference(-speed + boundedOutput, ControlType.kVelocity);
+        double wheelSpeed = speedSetpoint / 60 * kWheelInchesPerMotorRotation;
+        double azimuthRate = boundedOutput / 2 / 60 / kModuleCountsPerRev * 2 * Math.PI;
+        kKinematics.toMotorVelocities(wheelSpeed, azimuthRate, motorSetpoints);
+        motor1Setpoint = motorSetpoints[0];
+        motor2Setpoint = motorSetpoints[1];
     }
 
     /**
-     * Angle is in radians!
+     * @return Steering setpoint from the last {@link #prepare(double, double)} in native ticks.
      */
-    public void set(double angle, double magnitude) {
-        double speed = magnitude;
-        double angleSetpoint = angle * kModuleCountsPerRev / (2 * Math.PI);
+    double getAngleSetpoint() {
+        return angleSetpoint;
+    }
+
+    /**
+     * @param limit Cap on the steering output, in rpm of both motors together.
+     */
+    public void setSteeringOutputLimit(double limit) {
+        steeringOutputLimit = limit;
+    }
 
-        motor1.pidController.setReference(speed, ControlType.kVelocity);
+    /**
+     * @return How far the module is from its steering setpoint, the short way round, in radians.
+     *         Uses the readings from the last {@link #readSensors(long)}.
+     */
+    public double getSteeringError() {
+        double error = MathUtils.normalizeAngleNative(angleSetpoint - getModulePosNative(), kModuleCountsPerRev);
+        return error * 2 * Math.PI / kModuleCountsPerRev;
+    }
 
-        double kP = SmartDashboard.getNumber("kP", 0);
-        double kI = SmartDashboard.getNumber("kI", 0);
-        double kD = SmartDashboard.getNumber("kD", 0);
-        
-        miniPID.setPID(kP, kI, kD);
-        double output = miniPID.getOutput(getModulePosNative(), angleSetpoint);
+    /**
+     * Logs the setpoints, encoder readings and PID terms of the last {@link #calculate(double, double)}.
+     * @param logger Logger to write to.
+     * @param index Index of the module in the log.
+     */
+    public void log(FlightLogger logger, int index) {
+        logger.log(RecordType.MODULE_SETPOINT, index, angleSetpoint, speedSetpoint, motor1Setpoint, motor2Setpoint);
+        logger.log(RecordType.ENCODER, index, motor1Position, motor1Velocity, motor2Position, motor2Velocity);
+        if(steeringPid == null)
+            return;
+        logger.log(RecordType.PID, index, angleSetpoint, getModulePosNative(), steeringPid.getLastP(pidIndex),
+                steeringPid.getLastI(pidIndex), steeringPid.getLastD(pidIndex), steeringPid.getLastOutput(pidIndex));
+    }
 
-        // Make sure our output isn't TOO extreme.
-        double boundedOutput = MathUtils.limit(output, 100);
+    /**
+     * Sends the setpoints from the last {@link #calculate(double, double)} to both motors.
+     */
+    public void write() {
+        motor1.setReference(motor1Setpoint, ControlType.kVelocity);
+        motor2.setReference(motor2Setpoint, ControlType.kVelocity);
+    }
+
+    /**
+     * Stops both motors.
+     */
+    public void stop() {
+        motor1Setpoint = 0;
+        motor2Setpoint = 0;
+        motor1.set(0);
+        motor2.set(0);
+    }
+
+    public ModuleID getModuleID() {
+        return moduleID;
+    }
 
-        // Set the second motor to have speed - output.
-        motor2.pidController.setReference(-speed + boundedOutput, ControlType.kVelocity);
+    Motor getMotor1() {
+        return motor1;
+    }
+
+    Motor getMotor2() {
+        return motor2;
     }
 
     public double getM1Velocity() {
-        return motor1.encoder.getVelocity();
+        return motor1Velocity;
+    }
+
+    public double getM2Velocity() {
+        return motor2Velocity;
+    }
+
+    public double getM1Position() {
+        return motor1Position;
+    }
+
+    public double getM2Position() {
+        return motor2Position;
     }
 
     public void printTelemetry() {
-        SmartDashboard.putNumber("Module Position Native", getModulePosNative());
+        Telemetry.put(positionKey, getModulePosNative());
     }
 }
\ No newline at end of file
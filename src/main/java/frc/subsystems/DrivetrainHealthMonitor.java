@@ -0,0 +1,258 @@
+package frc.subsystems;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.revrobotics.CANSparkMax.FaultID;
+
+import frc.subsystems.DiffSwerveModule.ModuleID;
+import frc.util.Clock;
+import frc.util.Telemetry;
+
+/**
+ * Watches the eight drive motors for trouble that would otherwise only show up as odd driving: a
+ * controller off the bus, latched faults, overheating, a low bus, a stalled motor, a frozen encoder,
+ * or the two motors of a module fighting each other.
+ *
+ * <p>Call {@link #check()} at a low rate from a thread of its own, for example a 10 Hz
+ * {@link frc.util.RealTimeScheduler} task. It only reads values the controllers send in their status
+ * frames and the readings the modules already took, and shares no locks with the control loop, so it
+ * never holds it up. Simulated motors aren't thread safe, so with those call it from the simulation
+ * thread instead.
+ *
+ * <p>The status of a module is one int: the flags of motor 1 in the low byte, those of motor 2 in the
+ * next, and the module flags from bit 16 up. It is 0 when all is well and is published as
+ * {@code "<module> Health"}. Newly raised flags are also printed as errors.
+ */
+public class DrivetrainHealthMonitor {
+    // Motor flags.
+    public static final int kDisconnected = 1;
+    public static final int kStickyFault = 1 << 1;
+    public static final int kOverTemperature = 1 << 2;
+    public static final int kLowVoltage = 1 << 3;
+    public static final int kStall = 1 << 4;
+    public static final int kEncoderFrozen = 1 << 5;
+    public static final int kMotor2Shift = 8;
+    // Module flags.
+    public static final int kFighting = 1 << 16;
+
+    private static final String[] kMotorFlagNames = {
+        "off the bus", "sticky fault", "over temperature", "low voltage", "stalled", "encoder frozen"
+    };
+
+    // Drawing this much on average while barely turning is a stall. The average, because the loops
+    // around a stuck motor keep changing what they ask of it.
+    public static final double kStallCurrent = 20; // A
+    public static final double kStallVelocity = 60; // rpm
+    public static final long kStallTime = 500000; // us
+    // Driven this hard, a motor turns, so its position has to change.
+    public static final double kMovingOutput = 0.05;
+    public static final long kFreezeTime = 500000; // us
+    // A motor turning against its own output this fast, while the other one drives, is being dragged.
+    public static final double kBackDriveVelocity = 100; // rpm
+    public static final double kFightCurrent = 30; // A, both motors together
+    public static final long kFightTime = 500000; // us
+    public static final double kMaxTemperature = 80; // C
+    public static final double kMinBusVoltage = 8; // V
+    // Set on every power up, so it says nothing about trouble.
+    private static final int kIgnoredFaults = 1 << FaultID.kHasReset.ordinal();
+
+    private final ModuleID[] ids = ModuleID.values();
+    private final DiffSwerveModuleSpark[] modules = new DiffSwerveModuleSpark[ids.length];
+    private final Motor[] motors = new Motor[ids.length * 2];
+    private final Clock clock;
+
+    // Per motor, only touched by the thread calling check().
+    private final long[] stoppedSince = new long[motors.length];
+    private final double[] stoppedCurrent = new double[motors.length];
+    private final int[] stoppedSamples = new int[motors.length];
+    private final double[] lastPosition = new double[motors.length];
+    private final long[] lastMoved = new long[motors.length];
+    private final double[] output = new double[motors.length];
+    private final double[] current = new double[motors.length];
+    private final double[] velocity = new double[motors.length];
+    private final boolean[] connected = new boolean[motors.length];
+    // Per module.
+    private final long[] fightingSince = new long[ids.length];
+    private final int[] statusKeys = new int[ids.length];
+
+    private final AtomicIntegerArray status = new AtomicIntegerArray(ids.length);
+    private volatile boolean logging = true;
+
+    /**
+     * @param drive Drivetrain to watch.
+     * @param clock Clock to time stalls and frozen encoders with.
+     */
+    public DrivetrainHealthMonitor(SwerveDrive drive, Clock clock) {
+        this.clock = clock;
+        for(int i = 0; i < ids.length; i++) {
+            modules[i] = drive.getModule(ids[i]);
+            motors[i * 2] = modules[i].getMotor1();
+            motors[i * 2 + 1] = modules[i].getMotor2();
+            statusKeys[i] = Telemetry.register(ids[i] + " Health");
+        }
+        reset();
+    }
+
+    /**
+     * Samples every motor once and updates the status of every module.
+     */
+    public void check() {
+        long now = clock.getMicros();
+        for(int i = 0; i < modules.length; i++) {
+            DiffSwerveModuleSpark module = modules[i];
+            int flags = checkMotor(i * 2, module.getM1Position(), module.getM1Velocity(), now)
+                    | checkMotor(i * 2 + 1, module.getM2Position(), module.getM2Velocity(), now) << kMotor2Shift;
+            if(checkFighting(i, now))
+                flags |= kFighting;
+
+            int raised = flags & ~status.getAndSet(i, flags);
+            if(raised != 0 && logging)
+                System.out.println("ERROR: " + ids[i] + " module " + describe(raised));
+            Telemetry.put(statusKeys[i], flags);
+        }
+    }
+
+    private int checkMotor(int index, double position, double velocity, long now) {
+        Motor motor = motors[index];
+        connected[index] = motor.isConnected();
+        if(!connected[index]) {
+            // Everything else it reports is stale.
+            stoppedSince[index] = -1;
+            lastMoved[index] = now;
+            return kDisconnected;
+        }
+
+        int flags = 0;
+        if((motor.getStickyFaults() & ~kIgnoredFaults) != 0)
+            flags |= kStickyFault;
+        if(motor.getMotorTemperature() > kMaxTemperature)
+            flags |= kOverTemperature;
+        if(motor.getBusVoltage() < kMinBusVoltage)
+            flags |= kLowVoltage;
+
+        double current = motor.getOutputCurrent();
+        double output = motor.getAppliedOutput();
+        this.current[index] = current;
+        this.output[index] = output;
+        this.velocity[index] = velocity;
+
+        boolean stalling = false;
+        if(Math.abs(velocity) < kStallVelocity) {
+            if(stoppedSince[index] < 0) {
+                stoppedSince[index] = now;
+                stoppedCurrent[index] = 0;
+                stoppedSamples[index] = 0;
+            }
+            stoppedCurrent[index] += current;
+            stoppedSamples[index]++;
+            stalling = stoppedCurrent[index] / stoppedSamples[index] > kStallCurrent;
+            if(stalling && now - stoppedSince[index] >= kStallTime)
+                flags |= kStall;
+        } else {
+            stoppedSince[index] = -1;
+        }
+
+        // A stalled motor doesn't move either, but that's not the encoder's fault.
+        if(position != lastPosition[index] || Math.abs(output) < kMovingOutput || stalling) {
+            lastPosition[index] = position;
+            lastMoved[index] = now;
+        } else if(now - lastMoved[index] >= kFreezeTime) {
+            flags |= kEncoderFrozen;
+        }
+        return flags;
+    }
+
+    private boolean checkFighting(int module, long now) {
+        int first = module * 2, second = module * 2 + 1;
+        boolean fighting = connected[first] && connected[second] && current[first] + current[second] > kFightCurrent
+                && (isDragged(first) && isDriving(second) || isDragged(second) && isDriving(first));
+        if(!fighting) {
+            fightingSince[module] = -1;
+            return false;
+        }
+        if(fightingSince[module] < 0)
+            fightingSince[module] = now;
+        return now - fightingSince[module] >= kFightTime;
+    }
+
+    private boolean isDragged(int index) {
+        return output[index] * velocity[index] < 0 && Math.abs(velocity[index]) > kBackDriveVelocity
+                && Math.abs(output[index]) > kMovingOutput;
+    }
+
+    private boolean isDriving(int index) {
+        return output[index] * velocity[index] > 0 && Math.abs(output[index]) > kMovingOutput;
+    }
+
+    /**
+     * @param id Module to get the status of.
+     * @return Flags from the last {@link #check()}, 0 if all is well. Safe to call from any thread.
+     */
+    public int getStatus(ModuleID id) {
+        return status.get(id.ordinal());
+    }
+
+    /**
+     * @return Whether no module had any flag raised on the last {@link #check()}. Safe to call from any thread.
+     */
+    public boolean isHealthy() {
+        for(int i = 0; i < status.length(); i++) {
+            if(status.get(i) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param logging Whether to print newly raised flags. The status is published either way.
+     */
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    /**
+     * Forgets everything seen so far, for example after the motors were reset in simulation.
+     */
+    public void reset() {
+        long now = clock.getMicros();
+        for(int i = 0; i < motors.length; i++) {
+            stoppedSince[i] = -1;
+            lastPosition[i] = Double.NaN;
+            lastMoved[i] = now;
+            connected[i] = true;
+            output[i] = 0;
+            current[i] = 0;
+            velocity[i] = 0;
+        }
+        for(int i = 0; i < ids.length; i++) {
+            fightingSince[i] = -1;
+            status.set(i, 0);
+        }
+    }
+
+    /**
+     * @param status Status of a module, as from {@link #getStatus(ModuleID)}.
+     * @return The raised flags in words, for example {@code "motor 1 stalled, motors fighting"}.
+     */
+    public static String describe(int status) {
+        if(status == 0)
+            return "ok";
+        StringBuilder text = new StringBuilder();
+        for(int motor = 0; motor < 2; motor++) {
+            int flags = status >> (motor * kMotor2Shift);
+            for(int bit = 0; bit < kMotorFlagNames.length; bit++) {
+                if((flags & (1 << bit)) != 0)
+                    append(text, "motor " + (motor + 1) + " " + kMotorFlagNames[bit]);
+            }
+        }
+        if((status & kFighting) != 0)
+            append(text, "motors fighting");
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String flag) {
+        if(text.length() > 0)
+            text.append(", ");
+        text.append(flag);
+    }
+}
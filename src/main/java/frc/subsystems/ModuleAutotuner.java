@@ -0,0 +1,358 @@
+package frc.subsystems;
+
+import com.revrobotics.ControlType;
+
+import frc.maths.PidBank;
+import frc.maths.RelayAutotuner;
+import frc.maths.StepResponse;
+import frc.maths.RelayAutotuner.Rule;
+import frc.util.Clock;
+import frc.util.TuningRegistry;
+
+/**
+ * Tunes one module with relay experiments, first the steering loop and then the drive velocity loop.
+ * For each loop it runs a {@link RelayAutotuner}, turns the ultimate gain and period into gains,
+ * applies them, and then checks them with a step to measure rise time, overshoot and settling time.
+ * The new gains are only kept if the step settles within a second; otherwise the old ones are put
+ * back and tuning stops there.
+ * Only talks to the module and its {@link Motor}s, so it works the same on a simulated module.
+ *
+ * <p>Call {@link #update()} once per steering tick, after the module's sensors were read,
+ * until {@link #isDone()}. It only runs the experiments and never blocks, so it can run on the
+ * real-time steering task. Call {@link #periodic()} from the main loop too: it applies what needs
+ * CAN or NetworkTables writes, the dashboard gains and the Spark MAX PIDF, and prints the results.
+ * The drive step waits for the main loop to apply the drive gains.
+ * The module should be free to spin, for example with the robot on blocks.
+ */
+public class ModuleAutotuner {
+    // NEO free speed, to guess the duty cycle that holds the drive test speed.
+    private static final double kFreeSpeedRPM = 5676;
+
+    // Steering relay swings the steering output (RPM on motor 2) around the starting angle.
+    private static final double kSteeringAmplitude = 80;
+    private static final double kSteeringHysteresis = 0.02; // native ticks
+    // A bit under a quarter turn, so the optimizer doesn't flip the wheel.
+    private static final double kSteeringStep = DiffSwerveModuleSpark.kModuleCountsPerRev * 0.2;
+
+    // Drive relay swings the duty cycle around what should hold this wheel speed.
+    private static final double kDriveSpeed = 1000; // rpm
+    private static final double kDriveAmplitude = 0.1;
+    private static final double kDriveHysteresis = 20; // rpm
+
+    private static final int kCycles = 5;
+    private static final double kRelayTimeout = 10; // s
+    private static final double kStepDuration = 2; // s
+    // A step has to settle this quickly for its gains to be kept, so it stays settled for a second.
+    private static final double kMaxSettlingTime = 1; // s
+    // The Spark MAX closed loop runs every millisecond.
+    private static final double kSparkLoopPeriod = 0.001;
+    // How long the drive step waits for the main loop to apply the drive gains.
+    private static final double kApplyTimeout = 1; // s
+
+    private enum Phase { STEERING_RELAY, STEERING_STEP, DRIVE_RELAY, DRIVE_APPLY, DRIVE_STEP, DONE }
+
+    // Results handed to the main loop, in order. Each one's numbers are written before it's published.
+    private static final int kSteeringTuned = 1;
+    private static final int kSteeringChecked = 2;
+    private static final int kDriveTuned = 3;
+    private static final int kDriveChecked = 4;
+
+    private final DiffSwerveModuleSpark module;
+    private final PidBank steeringPid;
+    private final Clock clock;
+    private final double steeringLoopPeriod;
+    private final Rule rule;
+
+    // Only touched by the thread calling update().
+    private RelayAutotuner relay;
+    private StepResponse step;
+    private long phaseStart;
+    private double stepTarget;
+
+    // Gains the steering ran with before tuning, put back if the new ones fail their step.
+    private PidBank.Gains previousSteeringGains;
+    // Spark MAX PIDF of each drive motor before tuning, only touched by the thread calling periodic().
+    private double[] previousMotor1Gains, previousMotor2Gains;
+
+    // Written by update() before the result they belong to is published.
+    private final double[] steeringGains = new double[3];
+    private final double[] driveGains = new double[3];
+    private double driveFeedForward;
+    private double steeringUltimateGain, steeringUltimatePeriod, driveUltimateGain, driveUltimatePeriod;
+    private StepResponse steeringStep, driveStep;
+    private boolean steeringAccepted, driveAccepted;
+    private String failure;
+
+    private volatile Phase phase = Phase.STEERING_RELAY;
+    private volatile int published;
+    private volatile boolean failed;
+    private volatile boolean driveGainsApplied;
+    // Only touched by the thread calling periodic().
+    private int handled;
+
+    /**
+     * @param module Module to tune.
+     * @param steeringPid Steering controllers the module uses; the new steering gains are published to it.
+     * @param clock Clock to time the experiments with.
+     * @param steeringLoopPeriod Period the steering PID runs at, in seconds.
+     * @param rule How aggressive the proposed gains should be.
+     */
+    public ModuleAutotuner(DiffSwerveModuleSpark module, PidBank steeringPid, Clock clock, double steeringLoopPeriod, Rule rule) {
+        this.module = module;
+        this.steeringPid = steeringPid;
+        this.clock = clock;
+        this.steeringLoopPeriod = steeringLoopPeriod;
+        this.rule = rule;
+    }
+
+    /**
+     * Runs one tick of the current experiment and writes the motors.
+     */
+    public void update() {
+        long now = clock.getMicros();
+        switch(phase) {
+            case STEERING_RELAY:
+                updateSteeringRelay(now);
+                break;
+            case STEERING_STEP:
+                updateSteeringStep(now);
+                break;
+            case DRIVE_RELAY:
+                updateDriveRelay(now);
+                break;
+            case DRIVE_APPLY:
+                updateDriveApply(now);
+                break;
+            case DRIVE_STEP:
+                updateDriveStep(now);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void updateSteeringRelay(long now) {
+        double position = module.getModulePosNative();
+        if(relay == null)
+            relay = new RelayAutotuner(position, 0, kSteeringAmplitude, kSteeringHysteresis, kCycles, kRelayTimeout);
+
+        double output = relay.update(position, now);
+        module.prepare(module.getModuleAngle(), 0);
+        module.apply(output);
+        module.write();
+
+        if(!relay.isDone())
+            return;
+        if(relay.isFailed()) {
+            fail("steering relay never oscillated");
+            return;
+        }
+        relay.proposeGains(rule, steeringLoopPeriod, steeringGains);
+        steeringUltimateGain = relay.getUltimateGain();
+        steeringUltimatePeriod = relay.getUltimatePeriod();
+        published = kSteeringTuned;
+        // Live for the step only. A lock-free hand-off, unlike the dashboard gains which periodic() sets.
+        previousSteeringGains = steeringPid.getGains();
+        steeringPid.setGains(previousSteeringGains.withPID(steeringGains[0], steeringGains[1], steeringGains[2]));
+        steeringPid.reset();
+
+        stepTarget = position + kSteeringStep;
+        step = new StepResponse(position, stepTarget, 0.02);
+        phaseStart = now;
+        phase = Phase.STEERING_STEP;
+    }
+
+    private void updateSteeringStep(long now) {
+        step.add(now, module.getModulePosNative());
+        module.calculate(stepTarget * 2 * Math.PI / DiffSwerveModuleSpark.kModuleCountsPerRev, 0);
+        module.write();
+
+        if(now - phaseStart < kStepDuration * 1e6)
+            return;
+        steeringAccepted = isSettled(step);
+        steeringStep = step;
+        published = kSteeringChecked;
+        if(!steeringAccepted) {
+            steeringPid.setGains(previousSteeringGains);
+            steeringPid.reset();
+            fail("steering step didn't settle within a second");
+            return;
+        }
+
+        relay = null;
+        phase = Phase.DRIVE_RELAY;
+    }
+
+    private void updateDriveRelay(long now) {
+        double velocity = module.getWheelVelocity();
+        if(relay == null)
+            relay = new RelayAutotuner(kDriveSpeed, kDriveSpeed / kFreeSpeedRPM, kDriveAmplitude, kDriveHysteresis, kCycles, kRelayTimeout);
+
+        double output = relay.update(velocity, now);
+        module.getMotor1().set(output);
+        module.getMotor2().set(-output);
+
+        if(!relay.isDone())
+            return;
+        if(relay.isFailed()) {
+            fail("drive relay never oscillated");
+            return;
+        }
+        relay.proposeGains(rule, kSparkLoopPeriod, driveGains);
+        // The relay held the mean speed with the bias on average, which is the feedforward.
+        driveFeedForward = (kDriveSpeed / kFreeSpeedRPM) / relay.getMeanMeasurement();
+        driveUltimateGain = relay.getUltimateGain();
+        driveUltimatePeriod = relay.getUltimatePeriod();
+        published = kDriveTuned;
+
+        // Setting PIDF means blocking CAN writes, so the main loop does it.
+        module.stop();
+        phaseStart = now;
+        phase = Phase.DRIVE_APPLY;
+    }
+
+    private void updateDriveApply(long now) {
+        if(!driveGainsApplied) {
+            if(now - phaseStart >= kApplyTimeout * 1e6)
+                fail("the main loop never applied the drive gains");
+            return;
+        }
+        step = new StepResponse(module.getWheelVelocity(), kDriveSpeed * 1.5, 0.02);
+        phaseStart = now;
+        phase = Phase.DRIVE_STEP;
+    }
+
+    private void updateDriveStep(long now) {
+        step.add(now, module.getWheelVelocity());
+        module.getMotor1().setReference(kDriveSpeed * 1.5, ControlType.kVelocity);
+        module.getMotor2().setReference(-kDriveSpeed * 1.5, ControlType.kVelocity);
+
+        if(now - phaseStart < kStepDuration * 1e6)
+            return;
+        // Putting the old PIDF back is a CAN write too, periodic() does it once this is done.
+        driveAccepted = isSettled(step);
+        driveStep = step;
+        published = kDriveChecked;
+        if(!driveAccepted) {
+            fail("drive step didn't settle within a second");
+            return;
+        }
+        module.stop();
+        phase = Phase.DONE;
+    }
+
+    private static boolean isSettled(StepResponse step) {
+        // Never settling gives NaN.
+        return step.getSettlingTime() <= kMaxSettlingTime;
+    }
+
+    private void fail(String reason) {
+        module.stop();
+        failure = reason;
+        failed = true;
+        phase = Phase.DONE;
+    }
+
+    /**
+     * Applies and prints whatever {@link #update()} has finished since the last call. Blocks on CAN and
+     * NetworkTables writes, so call it from the main loop, for example from testPeriodic.
+     * @return Whether tuning is over and all of its results were handled.
+     */
+    public boolean periodic() {
+        // Read before the results, so everything published before it finished is seen below.
+        boolean done = phase == Phase.DONE;
+        int available = published;
+        while(handled < available) {
+            handled++;
+            handle(handled);
+        }
+        if(!done)
+            return false;
+        // Also when the gains went on just as the tuner gave up waiting for them.
+        if(previousMotor1Gains != null && !driveAccepted) {
+            setPIDF(module.getMotor1(), previousMotor1Gains);
+            setPIDF(module.getMotor2(), previousMotor2Gains);
+        }
+        previousMotor1Gains = null;
+        previousMotor2Gains = null;
+        if(failed && failure != null) {
+            System.out.println("ERROR: Autotune " + module.getModuleID() + ": " + failure + ", kept the old gains of that loop");
+            failure = null;
+        }
+        return true;
+    }
+
+    private void handle(int result) {
+        switch(result) {
+            case kSteeringTuned:
+                report("steering", steeringUltimateGain, steeringUltimatePeriod, steeringGains);
+                break;
+            case kSteeringChecked:
+                reportStep("steering", steeringStep);
+                if(!steeringAccepted)
+                    break;
+                // Publish to the dashboard too, so the gains stay after tuning. The bank already runs all
+                // three, and each of these only changes its own gain, so it never sees a mix.
+                TuningRegistry.number("kP", 0).set(steeringGains[0]);
+                TuningRegistry.number("kI", 0).set(steeringGains[1]);
+                TuningRegistry.number("kD", 0).set(steeringGains[2]);
+                break;
+            case kDriveTuned:
+                report("drive", driveUltimateGain, driveUltimatePeriod, driveGains);
+                System.out.println("Autotune " + module.getModuleID() + " drive: FF=" + driveFeedForward);
+                previousMotor1Gains = module.getMotor1().getPIDF();
+                previousMotor2Gains = module.getMotor2().getPIDF();
+                module.getMotor1().setPIDF(driveGains[0], driveGains[1], driveGains[2], driveFeedForward);
+                module.getMotor2().setPIDF(driveGains[0], driveGains[1], driveGains[2], driveFeedForward);
+                driveGainsApplied = true;
+                break;
+            case kDriveChecked:
+                reportStep("drive", driveStep);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void setPIDF(Motor motor, double[] gains) {
+        motor.setPIDF(gains[0], gains[1], gains[2], gains[3]);
+    }
+
+    private void report(String loop, double ultimateGain, double ultimatePeriod, double[] gains) {
+        System.out.println("Autotune " + module.getModuleID() + " " + loop + ": Ku=" + ultimateGain
+                + " Pu=" + ultimatePeriod + "s -> P=" + gains[0] + " I=" + gains[1] + " D=" + gains[2]);
+    }
+
+    private void reportStep(String loop, StepResponse step) {
+        System.out.println("Autotune " + module.getModuleID() + " " + loop + " step: rise " + step.getRiseTime()
+                + "s, overshoot " + step.getOvershoot() * 100 + "%, settling " + step.getSettlingTime() + "s");
+    }
+
+    /**
+     * @return Whether tuning is over, successfully or not.
+     */
+    public boolean isDone() {
+        return phase == Phase.DONE;
+    }
+
+    /**
+     * @return Whether one of the experiments failed. The gains of a failed loop are left as they were.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Proposed steering gains {@code {p, i, d}}, per steering tick.
+     */
+    public double[] getSteeringGains() {
+        return steeringGains.clone();
+    }
+
+    /**
+     * @return Proposed drive velocity gains {@code {p, i, d, ff}} for the Spark MAX.
+     */
+    public double[] getDriveGains() {
+        return new double[] { driveGains[0], driveGains[1], driveGains[2], driveFeedForward };
+    }
+}
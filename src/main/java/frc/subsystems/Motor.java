@@ -0,0 +1,136 @@
+package frc.subsystems;
+
+import com.revrobotics.ControlType;
+
+/**
+ * A motor with an integrated encoder and closed-loop controller.
+ * The modules only talk to their motors through this interface, so they can run against
+ * real Spark MAXes ({@link SparkMax}) or a simulated one ({@link frc.sim.SimSparkMax}).
+ * Units follow the Spark MAX defaults: positions in rotations, velocities in RPM.
+ */
+public interface Motor {
+
+    /**
+     * @return Name of the motor, used for telemetry.
+     */
+    String getName();
+
+    /**
+     * Runs the motor open loop.
+     * @param speed Duty cycle (-1..1).
+     */
+    void set(double speed);
+
+    /**
+     * @param isInverted Whether positive outputs turn the motor backwards.
+     */
+    void setInverted(boolean isInverted);
+
+    /**
+     * Sets the setpoint of the closed-loop controller.
+     * @param value Setpoint, in the units of {@code type}.
+     * @param type Control mode to run in.
+     */
+    void setReference(double value, ControlType type);
+
+    /**
+     * Sets the setpoint of the closed-loop controller with an additional feedforward.
+     * @param value Setpoint, in the units of {@code type}.
+     * @param type Control mode to run in.
+     * @param arbFeedforward Feedforward added to the controller output, as a duty cycle (-1..1).
+     */
+    void setReference(double value, ControlType type, double arbFeedforward);
+
+    /**
+     * Configures the gains of the closed-loop controller.
+     * @param p Proportional gain.
+     * @param i Integral gain.
+     * @param d Derivative gain.
+     * @param ff Velocity feedforward gain.
+     */
+    void setPIDF(double p, double i, double d, double ff);
+
+    /**
+     * @return Gains of the closed-loop controller {@code {p, i, d, ff}}, as last set.
+     */
+    double[] getPIDF();
+
+    /**
+     * @param iZone Error outside of which the integral term is reset. 0 disables it.
+     */
+    void setIZone(double iZone);
+
+    /**
+     * @param min Minimum closed-loop output as a duty cycle.
+     * @param max Maximum closed-loop output as a duty cycle.
+     */
+    void setOutputRange(double min, double max);
+
+    /**
+     * Sets how often the controller sends each of its status frames. Readings are only as fresh as
+     * the frame they come in, but every frame adds to the CAN bus load.
+     * @param status0Ms Applied output and faults.
+     * @param status1Ms Velocity, current, temperature and bus voltage.
+     * @param status2Ms Position.
+     */
+    void setStatusFramePeriods(int status0Ms, int status1Ms, int status2Ms);
+
+    /**
+     * @return Encoder position in rotations.
+     */
+    double getEncPosition();
+
+    /**
+     * @return Encoder velocity in RPM.
+     */
+    double getEncVelocity();
+
+    /**
+     * @return When the position from the last {@link #getEncPosition()} was measured, in microseconds
+     *         on the robot clock. Older than the call, since it had to come over CAN in a status frame.
+     *         Stays the same while new frames bring the same reading.
+     */
+    long getEncPositionTime();
+
+    /**
+     * @return When the velocity from the last {@link #getEncVelocity()} was measured, in microseconds
+     *         on the robot clock. Stays the same while new frames bring the same reading.
+     */
+    long getEncVelocityTime();
+
+    /**
+     * @return Duty cycle currently applied to the motor.
+     */
+    double getAppliedOutput();
+
+    /**
+     * @return Current drawn by the motor in amps.
+     */
+    double getOutputCurrent();
+
+    /**
+     * @return Voltage at the input of the controller.
+     */
+    double getBusVoltage();
+
+    /**
+     * @return Motor temperature in degrees C.
+     */
+    double getMotorTemperature();
+
+    /**
+     * @return Faults latched since they were last cleared, bit {@code n} for {@code CANSparkMax.FaultID} ordinal {@code n}.
+     */
+    short getStickyFaults();
+
+    /**
+     * Checks whether the controller is still sending status frames. Safe to call from any thread.
+     * @return Whether the controller is on the bus.
+     */
+    boolean isConnected();
+
+    /**
+     * Periodic housekeeping for the motor, such as picking up tuning changes from the dashboard.
+     */
+    void process();
+}
@@ -0,0 +1,77 @@
+package frc.subsystems;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Closed loop settings wanted on a Spark MAX, see {@link SparkConfigurator}.
+ * Immutable; the {@code with} methods return a changed copy.
+ */
+public final class SparkConfig {
+    /** What every drive motor starts with. */
+    public static final SparkConfig kDefault = new SparkConfig(5e-5, 1e-6, 0, 0, 0.000156, -1, 1, 2000, 0, 1500, 0);
+
+    public final double p, i, d, iZone, ff;
+    public final double minOutput, maxOutput;
+    // Smart Motion, slot 0.
+    public final double maxVelocity, minVelocity, maxAcceleration, allowedError;
+
+    private SparkConfig(double p, double i, double d, double iZone, double ff, double minOutput, double maxOutput,
+            double maxVelocity, double minVelocity, double maxAcceleration, double allowedError) {
+        this.p = p;
+        this.i = i;
+        this.d = d;
+        this.iZone = iZone;
+        this.ff = ff;
+        this.minOutput = minOutput;
+        this.maxOutput = maxOutput;
+        this.maxVelocity = maxVelocity;
+        this.minVelocity = minVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.allowedError = allowedError;
+    }
+
+    public SparkConfig withPIDF(double p, double i, double d, double ff) {
+        return new SparkConfig(p, i, d, iZone, ff, minOutput, maxOutput, maxVelocity, minVelocity, maxAcceleration, allowedError);
+    }
+
+    public SparkConfig withIZone(double iZone) {
+        return new SparkConfig(p, i, d, iZone, ff, minOutput, maxOutput, maxVelocity, minVelocity, maxAcceleration, allowedError);
+    }
+
+    public SparkConfig withOutputRange(double minOutput, double maxOutput) {
+        return new SparkConfig(p, i, d, iZone, ff, minOutput, maxOutput, maxVelocity, minVelocity, maxAcceleration, allowedError);
+    }
+
+    /**
+     * @param maxVelocity Smart Motion cruise velocity in RPM.
+     * @param minVelocity Smart Motion minimum output velocity in RPM.
+     * @param maxAcceleration Smart Motion acceleration in RPM per second.
+     * @param allowedError Smart Motion allowed closed loop error in rotations.
+     */
+    public SparkConfig withSmartMotion(double maxVelocity, double minVelocity, double maxAcceleration, double allowedError) {
+        return new SparkConfig(p, i, d, iZone, ff, minOutput, maxOutput, maxVelocity, minVelocity, maxAcceleration, allowedError);
+    }
+
+    /**
+     * Hash of the settings as the Spark MAX stores them, in single precision. Two configs hash the
+     * same exactly when writing one over the other would leave the controller unchanged.
+     * @return The hash.
+     */
+    public long hash() {
+        ByteBuffer values = ByteBuffer.allocate(11 * Float.BYTES);
+        values.putFloat((float) p).putFloat((float) i).putFloat((float) d).putFloat((float) iZone).putFloat((float) ff);
+        values.putFloat((float) minOutput).putFloat((float) maxOutput);
+        values.putFloat((float) maxVelocity).putFloat((float) minVelocity).putFloat((float) maxAcceleration).putFloat((float) allowedError);
+
+        CRC32 crc = new CRC32();
+        crc.update(values.array());
+        return crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "P=" + p + " I=" + i + " D=" + d + " IZone=" + iZone + " FF=" + ff + " Output=[" + minOutput + ", " + maxOutput
+                + "] SmartMotion maxV=" + maxVelocity + " minV=" + minVelocity + " maxA=" + maxAcceleration + " err=" + allowedError;
+    }
+}
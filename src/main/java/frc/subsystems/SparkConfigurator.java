@@ -0,0 +1,133 @@
+package frc.subsystems;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.revrobotics.CANError;
+
+/**
+ * Configures a set of Spark MAXs at startup, touching CAN as little as possible.
+ * For every controller:
+ * <ol>
+ * <li>If flash burning is on and the hash saved after the last burn matches the config, the controller
+ * already boots with it and nothing is sent.</li>
+ * <li>Otherwise its settings are read back and only the ones that differ are written, see
+ * {@link SparkMax#configure(SparkConfig)}.</li>
+ * <li>With flash burning on, the config is then burned and its hash saved, so that only happens once
+ * per change of config.</li>
+ * </ol>
+ * Every read and write blocks until the controller answers, so the controllers are configured
+ * concurrently, each on its own thread, rather than one after the other.
+ *
+ * <p>Saved hashes are per CAN ID. After swapping a controller, delete its hash file (or the whole
+ * directory) so the new one gets configured.
+ */
+public class SparkConfigurator {
+    private final File hashDirectory;
+    private final boolean burnFlash;
+
+    /**
+     * @param hashDirectory Directory to keep the hashes of burned configs in, for example {@code /home/lvuser/sparkconfig}.
+     * @param burnFlash Whether to burn changed configs to flash, so they survive the controller rebooting.
+     */
+    public SparkConfigurator(File hashDirectory, boolean burnFlash) {
+        this.hashDirectory = hashDirectory;
+        this.burnFlash = burnFlash;
+    }
+
+    /**
+     * Configures all the motors at once and waits until they're done.
+     * @param motors Motors to configure.
+     * @param config Settings they should all have.
+     * @return Number of motors that failed to configure.
+     */
+    public int configure(List<SparkMax> motors, SparkConfig config) {
+        if(motors.isEmpty())
+            return 0;
+        long start = System.nanoTime();
+        if(burnFlash)
+            hashDirectory.mkdirs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(motors.size(), runnable -> {
+            Thread thread = new Thread(runnable, "SparkConfigurator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Integer>> results = new ArrayList<>();
+        for(SparkMax motor : motors) {
+            results.add(pool.submit(() -> configure(motor, config)));
+        }
+
+        int written = 0, upToDate = 0, failed = 0;
+        for(int i = 0; i < results.size(); i++) {
+            try {
+                int result = results.get(i).get();
+                if(result < 0)
+                    failed++;
+                else if(result == 0)
+                    upToDate++;
+                else
+                    written += result;
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed++;
+            } catch(ExecutionException e) {
+                System.out.println("ERROR: Configuring " + motors.get(i).getName() + " failed: " + e.getCause());
+                failed++;
+            }
+        }
+        pool.shutdown();
+
+        System.out.println("Configured " + motors.size() + " Spark MAXs in " + (System.nanoTime() - start) / 1000000
+                + " ms: " + written + " settings written, " + upToDate + " already up to date, " + failed + " failed");
+        return failed;
+    }
+
+    private int configure(SparkMax motor, SparkConfig config) {
+        long hash = config.hash();
+        File hashFile = new File(hashDirectory, "spark-" + motor.getDeviceId() + ".hash");
+        if(burnFlash && readHash(hashFile) == hash) {
+            motor.assume(config);
+            return 0;
+        }
+
+        int written = motor.configure(config);
+        if(written < 0) {
+            System.out.println("ERROR: " + motor.getName() + " didn't take its configuration");
+            return -1;
+        }
+        if(burnFlash) {
+            // Even with nothing written, what's in flash isn't known until it's been burned once.
+            if(motor.burnFlash() != CANError.kOK) {
+                System.out.println("ERROR: Couldn't burn the configuration of " + motor.getName() + " to flash");
+                return -1;
+            }
+            writeHash(hashFile, hash);
+        }
+        return written;
+    }
+
+    private static long readHash(File file) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file.toPath())).trim());
+        } catch(IOException | NumberFormatException e) {
+            // Hashes are never negative, so this never matches.
+            return -1;
+        }
+    }
+
+    private static void writeHash(File file, long hash) {
+        try {
+            Files.write(file.toPath(), Long.toString(hash).getBytes());
+        } catch(IOException e) {
+            System.out.println("ERROR: Couldn't save " + file + ": " + e.getMessage());
+        }
+    }
+}
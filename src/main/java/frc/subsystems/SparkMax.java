@@ -1,103 +1,213 @@
 package frc.subsystems;
 
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleSupplier;
+
 import com.revrobotics.CANEncoder;
+import com.revrobotics.CANError;
 import com.revrobotics.CANPIDController;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.ControlType;
+import com.revrobotics.CANPIDController.ArbFFUnits;
+
+import edu.wpi.first.wpilibj.RobotController;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.util.Clock;
+import frc.util.Telemetry;
+import frc.util.TunableBoolean;
+import frc.util.TunableNumber;
+import frc.util.TuningRegistry;
 
 /**
  * Publishes telemetry about a Spark motor controller.
+ * The closed loop settings aren't written on construction; use {@link SparkConfigurator}. Until then
+ * they're unknown, and the first {@link #process()} writes what the dashboard shows.
  */
-public class SparkMax extends CANSparkMax {
+public class SparkMax extends CANSparkMax implements Motor {
     private String name;
+    // Timestamps the encoder readings; has to be the clock the drivetrain predicts with.
+    private final Clock clock;
 
-    public CANPIDController pidController;
-    public CANEncoder encoder;
+    private CANPIDController pidController;
+    private CANEncoder encoder;
 
     public double kP, kI, kD, kIz, kFF, kMaxOutput, kMinOutput, maxRPM, maxVel, minVel, maxAcc, allowedErr;
+    // Settings not read or written yet. NaN differs from everything, so process() writes over them.
+    private static final double kNaN = Double.NaN;
+    private static final SparkConfig kUnknown = SparkConfig.kDefault.withPIDF(kNaN, kNaN, kNaN, kNaN).withIZone(kNaN)
+            .withOutputRange(kNaN, kNaN).withSmartMotion(kNaN, kNaN, kNaN, kNaN);
+
+    // Dashboard tunables, resolved once in the constructor.
+    private final TunableNumber pGain, iGain, dGain, iZone, feedForward, maxOutput, minOutput;
+    private final TunableNumber maxVelocity, minVelocity, maxAcceleration, allowedError, setPosition, setVelocity;
+    private final TunableBoolean velocityMode;
+    private final int setPointKey, processVariableKey, outputKey;
+
+    // Status frames don't say when they were measured, so that is worked out from when the readings change.
+    // Rough time from the controller sampling the encoder to the frame being readable, in us.
+    private static final long kFrameDelay = 500;
+    private long status1Period = 20000, status2Period = 20000; // us, the controller's defaults
+    private double lastPosition = Double.NaN, lastVelocity = Double.NaN;
+    private long lastPositionRead, lastVelocityRead;
+    // Written by the thread reading the encoders, read by any.
+    private volatile long positionTime, velocityTime;
+    // A controller that dropped off the bus stops sending frames, and its readings stop changing. A motor at
+    // rest holds its encoder readings too, but its status 1 voltage and current still move.
+    private static final int kStaleFrames = 20;
+    private double lastBusVoltage = Double.NaN, lastCurrent = Double.NaN;
+    private long statusTime;
 
     public SparkMax(String name, int id) {
+        this(name, id, RobotController::getFPGATime);
+    }
+
+    /**
+     * @param name Name of the motor, used for telemetry and tuning keys.
+     * @param id CAN id of the controller.
+     * @param clock Clock to timestamp the encoder readings with, the same one the drivetrain uses.
+     */
+    public SparkMax(String name, int id, Clock clock) {
         super(id, MotorType.kBrushless);
         this.name = name;
+        this.clock = clock;
 
         pidController = super.getPIDController();
         encoder = super.getEncoder();
 
-        // PID Coefficients
-        kP = 5e-5;
-        kI = 1e-6;
-        kD = 0;
-        kIz = 0;
-        kFF = 0.000156;
-        kMaxOutput = 1;
-        kMinOutput = -1;
+        // Configuration is left to configure(), so all motors can be configured at once. Until then the
+        // controller runs whatever is in its flash, so nothing is taken to be known.
+        adopt(kUnknown);
         maxRPM = 5700;
 
-        // Smart Motion Coefficients
-        maxVel = 2000; // rpm
-        maxAcc = 1500;
-
-        pidController.setP(kP);
-        pidController.setI(kI);
-        pidController.setD(kD);
-        pidController.setIZone(kIz);
-        pidController.setFF(kFF);
-        pidController.setOutputRange(kMinOutput, kMaxOutput);
-
-        /**
-         * Smart Motion coefficients are set on a CANPIDController object
-         * 
-         * - setSmartMotionMaxVelocity() will limit the velocity in RPM of the pid
-         * controller in Smart Motion mode - setSmartMotionMinOutputVelocity() will put
-         * a lower bound in RPM of the pid controller in Smart Motion mode -
-         * setSmartMotionMaxAccel() will limit the acceleration in RPM^2 of the pid
-         * controller in Smart Motion mode - setSmartMotionAllowedClosedLoopError() will
-         * set the max allowed error for the pid controller in Smart Motion mode
-         */
-        int smartMotionSlot = 0;
-        pidController.setSmartMotionMaxVelocity(maxVel, smartMotionSlot);
-        pidController.setSmartMotionMinOutputVelocity(minVel, smartMotionSlot);
-        pidController.setSmartMotionMaxAccel(maxAcc, smartMotionSlot);
-        pidController.setSmartMotionAllowedClosedLoopError(allowedErr, smartMotionSlot);
-
         // display PID coefficients on SmartDashboard
-        SmartDashboard.putNumber(name + " P Gain", kP);
-        SmartDashboard.putNumber(name + " I Gain", kI);
-        SmartDashboard.putNumber(name + " D Gain", kD);
-        SmartDashboard.putNumber(name + " I Zone", kIz);
-        SmartDashboard.putNumber(name + " Feed Forward", kFF);
-        SmartDashboard.putNumber(name + " Max Output", kMaxOutput);
-        SmartDashboard.putNumber(name + " Min Output", kMinOutput);
+        // The entries are only looked up here; process() reads the cached values.
+        SparkConfig config = SparkConfig.kDefault;
+        pGain = publish(name + " P Gain", config.p);
+        iGain = publish(name + " I Gain", config.i);
+        dGain = publish(name + " D Gain", config.d);
+        iZone = publish(name + " I Zone", config.iZone);
+        feedForward = publish(name + " Feed Forward", config.ff);
+        maxOutput = publish(name + " Max Output", config.maxOutput);
+        minOutput = publish(name + " Min Output", config.minOutput);
 
         // display Smart Motion coefficients
-        SmartDashboard.putNumber(name + " Max Velocity", maxVel);
-        SmartDashboard.putNumber(name + " Min Velocity", minVel);
-        SmartDashboard.putNumber(name + " Max Acceleration", maxAcc);
-        SmartDashboard.putNumber(name + " Allowed Closed Loop Error", allowedErr);
-        SmartDashboard.putNumber(name + " Set Position", 0);
-        SmartDashboard.putNumber(name + " Set Velocity", 0);
+        maxVelocity = publish(name + " Max Velocity", config.maxVelocity);
+        minVelocity = publish(name + " Min Velocity", config.minVelocity);
+        maxAcceleration = publish(name + " Max Acceleration", config.maxAcceleration);
+        allowedError = publish(name + " Allowed Closed Loop Error", config.allowedError);
+        setPosition = publish(name + " Set Position", 0);
+        setVelocity = publish(name + " Set Velocity", 0);
 
         // button to toggle between velocity and smart motion modes
-        SmartDashboard.putBoolean(name + " Mode", true);
+        velocityMode = TuningRegistry.bool(name + " Mode", true);
+        velocityMode.set(true);
+
+        setPointKey = Telemetry.register(name + " SetPoint");
+        processVariableKey = Telemetry.register(name + " Process Variable");
+        outputKey = Telemetry.register(name + " Output");
+    }
+
+    /**
+     * Brings the controller to the given settings, only writing the ones it doesn't already hold.
+     * Every read and write blocks on CAN, so this is meant for startup, see {@link SparkConfigurator}.
+     * @param config Settings to apply.
+     * @return Number of settings written, or -1 if the controller rejected or didn't answer one of them.
+     */
+    public int configure(SparkConfig config) {
+        // {written, failed}
+        int[] tally = new int[2];
+        update(tally, pidController.getP(), config.p, pidController::setP);
+        update(tally, pidController.getI(), config.i, pidController::setI);
+        update(tally, pidController.getD(), config.d, pidController::setD);
+        update(tally, pidController.getIZone(), config.iZone, pidController::setIZone);
+        update(tally, pidController.getFF(), config.ff, pidController::setFF);
+        if(differs(pidController.getOutputMin(), config.minOutput) || differs(pidController.getOutputMax(), config.maxOutput))
+            count(tally, pidController.setOutputRange(config.minOutput, config.maxOutput));
+        update(tally, pidController.getSmartMotionMaxVelocity(0), config.maxVelocity,
+                v -> pidController.setSmartMotionMaxVelocity(v, 0));
+        update(tally, pidController.getSmartMotionMinOutputVelocity(0), config.minVelocity,
+                v -> pidController.setSmartMotionMinOutputVelocity(v, 0));
+        update(tally, pidController.getSmartMotionMaxAccel(0), config.maxAcceleration,
+                v -> pidController.setSmartMotionMaxAccel(v, 0));
+        update(tally, pidController.getSmartMotionAllowedClosedLoopError(0), config.allowedError,
+                v -> pidController.setSmartMotionAllowedClosedLoopError(v, 0));
+
+        assume(config);
+        return tally[1] > 0 ? -1 : tally[0];
+    }
+
+    /**
+     * Takes the settings to be what the controller holds, without checking or writing anything.
+     * @param config Settings the controller is known to have.
+     */
+    void assume(SparkConfig config) {
+        adopt(config);
+        // Going through the dashboard keeps process() from writing the old values back.
+        pGain.set(kP);
+        iGain.set(kI);
+        dGain.set(kD);
+        iZone.set(kIz);
+        feedForward.set(kFF);
+        minOutput.set(kMinOutput);
+        maxOutput.set(kMaxOutput);
+        maxVelocity.set(maxVel);
+        minVelocity.set(minVel);
+        maxAcceleration.set(maxAcc);
+        allowedError.set(allowedErr);
+    }
+
+    private static void update(int[] tally, double current, double wanted, DoubleFunction<CANError> setter) {
+        if(differs(current, wanted))
+            count(tally, setter.apply(wanted));
+    }
+
+    private static void count(int[] tally, CANError error) {
+        tally[0]++;
+        if(error != CANError.kOK)
+            tally[1]++;
+    }
+
+    // The controller keeps its parameters in single precision.
+    private static boolean differs(double current, double wanted) {
+        return Float.floatToIntBits((float) current) != Float.floatToIntBits((float) wanted);
+    }
+
+    private void adopt(SparkConfig config) {
+        kP = config.p;
+        kI = config.i;
+        kD = config.d;
+        kIz = config.iZone;
+        kFF = config.ff;
+        kMinOutput = config.minOutput;
+        kMaxOutput = config.maxOutput;
+        maxVel = config.maxVelocity;
+        minVel = config.minVelocity;
+        maxAcc = config.maxAcceleration;
+        allowedErr = config.allowedError;
+    }
+
+    private static TunableNumber publish(String key, double value) {
+        TunableNumber tunable = TuningRegistry.number(key, value);
+        tunable.set(value);
+        return tunable;
     }
 
     /**
      * Updates the motor.
      */
+    @Override
     public void process() {
-        double p = SmartDashboard.getNumber(name + " P Gain", 0);
-        double i = SmartDashboard.getNumber(name + " I Gain", 0);
-        double d = SmartDashboard.getNumber(name + " D Gain", 0);
-        double iz = SmartDashboard.getNumber(name + " I Zone", 0);
-        double ff = SmartDashboard.getNumber(name + " Feed Forward", 0);
-        double max = SmartDashboard.getNumber(name + " Max Output", 0);
-        double min = SmartDashboard.getNumber(name + " Min Output", 0);
-        double maxV = SmartDashboard.getNumber(name + " Max Velocity", 0);
-        double minV = SmartDashboard.getNumber(name + " Min Velocity", 0);
-        double maxA = SmartDashboard.getNumber(name + " Max Acceleration", 0);
-        double allE = SmartDashboard.getNumber(name + " Allowed Closed Loop Error", 0);
+        double p = pGain.get();
+        double i = iGain.get();
+        double d = dGain.get();
+        double iz = iZone.get();
+        double ff = feedForward.get();
+        double max = maxOutput.get();
+        double min = minOutput.get();
+        double maxV = maxVelocity.get();
+        double minV = minVelocity.get();
+        double maxA = maxAcceleration.get();
+        double allE = allowedError.get();
 
         // if PID coefficients on SmartDashboard have changed, write new values to
         // controller
@@ -144,13 +254,12 @@ public class SparkMax extends CANSparkMax {
         }
 
         double setPoint, processVariable;
-        boolean mode = SmartDashboard.getBoolean(name + " Mode", false);
-        if (mode) {
-            setPoint = SmartDashboard.getNumber(name + " Set Velocity", 0);
+        if (velocityMode.get()) {
+            setPoint = setVelocity.get();
             pidController.setReference(setPoint, ControlType.kVelocity);
             processVariable = encoder.getVelocity();
         } else {
-            setPoint = SmartDashboard.getNumber(name + " Set Position", 0);
+            setPoint = setPosition.get();
             /**
              * As with other PID modes, Smart Motion is set by calling the setReference
              * method on an existing pid object and setting the control type to kSmartMotion
@@ -159,16 +268,129 @@ public class SparkMax extends CANSparkMax {
             processVariable = encoder.getPosition();
         }
 
-        SmartDashboard.putNumber(name + " SetPoint", setPoint);
-        SmartDashboard.putNumber(name + " Process Variable", processVariable);
-        SmartDashboard.putNumber(name + " Output", getAppliedOutput());
+        Telemetry.put(setPointKey, setPoint);
+        Telemetry.put(processVariableKey, processVariable);
+        Telemetry.put(outputKey, getAppliedOutput());
     }
 
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setReference(double value, ControlType type) {
+        pidController.setReference(value, type);
+    }
+
+    @Override
+    public void setReference(double value, ControlType type, double arbFeedforward) {
+        pidController.setReference(value, type, 0, arbFeedforward, ArbFFUnits.kPercentOut);
+    }
+
+    @Override
+    public void setPIDF(double p, double i, double d, double ff) {
+        // Going through the dashboard keeps process() from writing the old values back.
+        pGain.set(p);
+        iGain.set(i);
+        dGain.set(d);
+        feedForward.set(ff);
+        pidController.setP(p);
+        pidController.setI(i);
+        pidController.setD(d);
+        pidController.setFF(ff);
+        kP = p;
+        kI = i;
+        kD = d;
+        kFF = ff;
+    }
+
+    @Override
+    public double[] getPIDF() {
+        // Never configured, so ask the controller.
+        return new double[] { known(kP, pidController::getP), known(kI, pidController::getI),
+                known(kD, pidController::getD), known(kFF, pidController::getFF) };
+    }
+
+    private static double known(double cached, DoubleSupplier controller) {
+        return Double.isNaN(cached) ? controller.getAsDouble() : cached;
+    }
+
+    @Override
+    public void setIZone(double iZone) {
+        this.iZone.set(iZone);
+        pidController.setIZone(iZone);
+        kIz = iZone;
+    }
+
+    @Override
+    public void setOutputRange(double min, double max) {
+        minOutput.set(min);
+        maxOutput.set(max);
+        pidController.setOutputRange(min, max);
+        kMinOutput = min;
+        kMaxOutput = max;
+    }
+
+    @Override
+    public void setStatusFramePeriods(int status0Ms, int status1Ms, int status2Ms) {
+        setPeriodicFramePeriod(PeriodicFrame.kStatus0, status0Ms);
+        setPeriodicFramePeriod(PeriodicFrame.kStatus1, status1Ms);
+        setPeriodicFramePeriod(PeriodicFrame.kStatus2, status2Ms);
+        status1Period = status1Ms * 1000L;
+        status2Period = status2Ms * 1000L;
+    }
+
+    @Override
     public double getEncPosition() {
-        return encoder.getPosition();
+        long now = clock.getMicros();
+        double position = encoder.getPosition();
+        if(position != lastPosition) {
+            positionTime = measuredAt(now, lastPositionRead, status2Period);
+            lastPosition = position;
+        }
+        lastPositionRead = now;
+        return position;
     }
 
+    @Override
     public double getEncVelocity() {
-        return encoder.getVelocity();
+        long now = clock.getMicros();
+        double velocity = encoder.getVelocity();
+        if(velocity != lastVelocity) {
+            velocityTime = measuredAt(now, lastVelocityRead, status1Period);
+            lastVelocity = velocity;
+        }
+        lastVelocityRead = now;
+        return velocity;
+    }
+
+    // A changed reading came in a frame that arrived since the last read, and no longer than a frame
+    // period ago. Takes the middle of that window. An unchanged reading keeps its old time.
+    private static long measuredAt(long now, long lastRead, long period) {
+        return now - Math.min(now - lastRead, period) / 2 - kFrameDelay;
+    }
+
+    @Override
+    public long getEncPositionTime() {
+        return positionTime;
+    }
+
+    @Override
+    public long getEncVelocityTime() {
+        return velocityTime;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        long now = clock.getMicros();
+        double busVoltage = getBusVoltage(), current = getOutputCurrent();
+        if(busVoltage != lastBusVoltage || current != lastCurrent) {
+            lastBusVoltage = busVoltage;
+            lastCurrent = current;
+            statusTime = now;
+        }
+        long lastFrame = Math.max(statusTime, Math.max(positionTime, velocityTime));
+        return now - lastFrame <= kStaleFrames * Math.max(status1Period, status2Period);
     }
 }
\ No newline at end of file
@@ -0,0 +1,560 @@
+package frc.subsystems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+import frc.maths.MathUtils;
+import frc.maths.PidBank;
+import frc.maths.RelayAutotuner;
+import frc.maths.SwerveKinematics;
+import frc.maths.Trajectory;
+import frc.maths.TrajectoryGenerator;
+import frc.maths.filter.Filter;
+import frc.subsystems.DiffSwerveModule.ModuleID;
+import frc.util.Clock;
+import frc.util.FlightLogger;
+import frc.util.LoopProfiler;
+import frc.util.LoopProfiler.Phase;
+import frc.util.RealTimeScheduler;
+import frc.util.SeqLock;
+import frc.util.Telemetry;
+import frc.util.TunableNumber;
+import frc.util.TuningRegistry;
+import frc.util.FlightLogger.RecordType;
+
+/**
+ * Owns all four swerve modules and drives them together.
+ * Every tick the setpoints of all modules are worked out in one {@link SwerveKinematics} pass first,
+ * then all eight motor commands are sent back-to-back in a fixed order (FR, FL, BR, BL),
+ * so the modules see their new setpoints as close together as possible.
+ * With {@link #runSteeringAt(RealTimeScheduler, double, int)} the steering PID and the writes move to a
+ * faster task of their own, and {@link #drive} only hands it new setpoints.
+ */
+public class SwerveDrive {
+    // Matches the Smart Motion max velocity in SparkMax.
+    public static final double kMaxVelocity = 2000; // rpm
+    // Same limits at the wheel, for trajectories. Acceleration matches the Smart Motion max acceleration.
+    public static final double kMaxWheelSpeed = kMaxVelocity / 60 * DiffSwerveModuleSpark.kWheelInchesPerMotorRotation; // in/s
+    public static final double kMaxWheelAcceleration = 1500 / 60.0 * DiffSwerveModuleSpark.kWheelInchesPerMotorRotation; // in/s^2
+    // The steering output is capped at 100 rpm, split over both motors, so each turns the module at 50 rpm.
+    public static final double kMaxAzimuthRate = DiffSwerveModuleSpark.kSteeringOutputLimit / 2 / 60
+            / DiffSwerveModuleSpark.kModuleCountsPerRev * 2 * Math.PI; // rad/s
+    // Feedback on the pose error when following a trajectory, in 1/s.
+    public static final double kTrajectoryP = 2;
+    // Rough time from sending a steering command to the controller acting on it, in us: a frame on the
+    // bus, then waiting for the next 1 ms step of the Spark MAX closed loop. Nothing measures the real
+    // one, so it's tunable on the dashboard as "Command Latency us".
+    public static final long kDefaultCommandLatency = 1000;
+
+    private final DiffSwerveModuleSpark[] modules;
+
+    private final SwerveKinematics kinematics;
+    private final SwerveOdometry odometry;
+    private final TrajectoryGenerator trajectoryGenerator;
+    private final double[] trajectoryState = new double[6];
+    private final double[] followPose = new double[3];
+
+    // Steering controllers of every module, updated together.
+    private final PidBank steeringPid;
+    private final double[] pidActual;
+    private final double[] pidSetpoint;
+    private final double[] pidOutput;
+
+    // Kinematics buffers, reused every tick.
+    private final double[] angles;
+    private final double[] speeds;
+
+    // Written by the steering task when it is running, so read from other threads.
+    private volatile long computeNanos;
+    private volatile long writeNanos;
+
+    private LoopProfiler profiler;
+    private FlightLogger logger;
+
+    private final int computeKey = Telemetry.register("Swerve Compute us", 1, 1);
+    private final int writeKey = Telemetry.register("Swerve Write us", 1, 1);
+    private final int poseXKey = Telemetry.register("Pose X", 0.1, 1);
+    private final int poseYKey = Telemetry.register("Pose Y", 0.1, 1);
+    private final int poseHeadingKey = Telemetry.register("Pose Heading", 0.01, 1);
+    private final double[] telemetryPose = new double[3];
+
+    // Hand-off to the steering task: angles of every module followed by their speeds.
+    private final SeqLock setpoints;
+    private final double[] publishBuffer;
+    private final double[] controlBuffer;
+    private volatile boolean steeringTaskRunning;
+    private double steeringPeriod = 0.02;
+
+    private final Clock clock;
+    // Steering works on where the modules will be when the commands take effect, see setCommandLatency().
+    private volatile boolean latencyCompensation = true;
+    private final TunableNumber commandLatencyTunable = TuningRegistry.number("Command Latency us", kDefaultCommandLatency);
+    private volatile long commandLatency = (long) commandLatencyTunable.get();
+    // Set while a module is being tuned; only touched by whichever thread runs the steering.
+    private volatile ModuleAutotuner autotuner;
+    private int autotuneIndex;
+    private boolean autotuneStoppedOthers;
+
+    /**
+     * Creates a drivetrain of Spark MAX modules on the robot clock.
+     */
+    public SwerveDrive() {
+        this(RobotController::getFPGATime);
+    }
+
+    /**
+     * Creates a drivetrain of Spark MAX modules that timestamp their readings with the given clock.
+     * @param clock Clock for the modules, odometry and steering.
+     */
+    public SwerveDrive(Clock clock) {
+        this(id -> new DiffSwerveModuleSpark(id, clock), clock);
+    }
+
+    /**
+     * Creates a drivetrain with modules from the given factory, on the robot clock. The modules
+     * have to timestamp their readings with it too, as Spark MAXes do by default.
+     * @param moduleFactory Creates the module for each {@link ModuleID}.
+     */
+    public SwerveDrive(Function<ModuleID, DiffSwerveModuleSpark> moduleFactory) {
+        this(moduleFactory, RobotController::getFPGATime);
+    }
+
+    /**
+     * Creates a drivetrain with modules from the given factory.
+     * @param moduleFactory Creates the module for each {@link ModuleID}.
+     * @param clock Clock to timestamp the odometry with, for example {@code RobotController::getFPGATime}.
+     *              Steering predicts where the modules will be on this clock, so their motors have to
+     *              timestamp their readings with the same one.
+     */
+    public SwerveDrive(Function<ModuleID, DiffSwerveModuleSpark> moduleFactory, Clock clock) {
+        ModuleID[] ids = ModuleID.values();
+        modules = new DiffSwerveModuleSpark[ids.length];
+        double[] moduleX = new double[ids.length];
+        double[] moduleY = new double[ids.length];
+        angles = new double[ids.length];
+        speeds = new double[ids.length];
+
+        setpoints = new SeqLock(ids.length * 2);
+        publishBuffer = new double[ids.length * 2];
+        controlBuffer = new double[ids.length * 2];
+
+        for(int i = 0; i < ids.length; i++) {
+            modules[i] = moduleFactory.apply(ids[i]);
+            moduleX[i] = ids[i].x;
+            moduleY[i] = ids[i].y;
+        }
+        this.clock = clock;
+        kinematics = new SwerveKinematics(moduleX, moduleY);
+
+        steeringPid = DiffSwerveModuleSpark.createSteeringPid(ids.length);
+        commandLatencyTunable.addListener(() -> commandLatency = (long) commandLatencyTunable.get());
+        pidActual = new double[ids.length];
+        pidSetpoint = new double[ids.length];
+        pidOutput = new double[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            modules[i].useSteeringPid(steeringPid, i);
+        }
+        odometry = new SwerveOdometry(modules, moduleX, moduleY, clock);
+        trajectoryGenerator = createTrajectoryGenerator();
+    }
+
+    /**
+     * Configures the Spark MAXs of all modules at once. Simulated motors are left alone.
+     * @param configurator Configurator to use.
+     * @param config Settings for every drive motor.
+     * @return Number of motors that failed to configure.
+     */
+    public int configureMotors(SparkConfigurator configurator, SparkConfig config) {
+        List<SparkMax> sparks = new ArrayList<>();
+        for(DiffSwerveModuleSpark module : modules) {
+            if(module.getMotor1() instanceof SparkMax)
+                sparks.add((SparkMax) module.getMotor1());
+            if(module.getMotor2() instanceof SparkMax)
+                sparks.add((SparkMax) module.getMotor2());
+        }
+        return configurator.configure(sparks, config);
+    }
+
+    /**
+     * Creates a generator for trajectories within the limits of this drivetrain. Doesn't touch any
+     * hardware, so trajectories can be generated at build time too.
+     * @return The generator.
+     */
+    public static TrajectoryGenerator createTrajectoryGenerator() {
+        ModuleID[] ids = ModuleID.values();
+        double[] moduleX = new double[ids.length];
+        double[] moduleY = new double[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            moduleX[i] = ids[i].x;
+            moduleY[i] = ids[i].y;
+        }
+        // Its own kinematics, so it stays about the center whatever the drive rotates around.
+        return new TrajectoryGenerator(new SwerveKinematics(moduleX, moduleY),
+                kMaxWheelSpeed, kMaxWheelAcceleration, kMaxAzimuthRate, 1);
+    }
+
+    /**
+     * Drives the robot.
+     * @param gyroHeading Robot heading in radians.
+     * @param rotation "Power" of rotation (-1..1).
+     * @param translationX Field-centered x translation (-1..1).
+     * @param translationY Field-centered y translation (-1..1).
+     */
+    public void drive(double gyroHeading, double rotation, double translationX, double translationY) {
+        long start = System.nanoTime();
+
+        // Field-centric: turn the translation into the robot's frame once for every module.
+        double cos = MathUtils.cos(gyroHeading);
+        double sin = MathUtils.sin(gyroHeading);
+        double vx = translationX * cos - translationY * sin;
+        double vy = translationX * sin + translationY * cos;
+        // Full rotation spins the furthest module at full speed.
+        double omega = rotation / kinematics.getMaxRadius();
+        kinematics.toModuleStates(vx, vy, omega, 1.0, angles, speeds);
+        if(profiler != null)
+            profiler.mark(Phase.KINEMATICS);
+
+        if(autotuner != null && !steeringTaskRunning) {
+            runAutotune();
+            return;
+        }
+
+        if(steeringTaskRunning) {
+            // The steering task picks these up on its next run.
+            int count = modules.length;
+            for(int i = 0; i < count; i++) {
+                publishBuffer[i] = angles[i];
+                publishBuffer[count + i] = speeds[i];
+            }
+            setpoints.write(publishBuffer);
+            computeNanos = System.nanoTime() - start;
+            return;
+        }
+
+        calculateModules(angles, speeds, 0, 0);
+        if(profiler != null)
+            profiler.mark(Phase.PID);
+
+        long computed = System.nanoTime();
+
+        writeModules();
+        if(profiler != null)
+            profiler.mark(Phase.CAN_WRITE);
+
+        long written = System.nanoTime();
+        computeNanos = computed - start;
+        writeNanos = written - computed;
+        log();
+    }
+
+    private void log() {
+        if(logger == null)
+            return;
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].log(logger, i);
+        }
+        logger.log(RecordType.LOOP_TIMING, 0, computeNanos / 1000.0, writeNanos / 1000.0, 0, 0);
+    }
+
+    /**
+     * Drives at a field-relative velocity.
+     * @param vx Field x velocity in inches per second.
+     * @param vy Field y velocity in inches per second.
+     * @param omega Angular velocity in radians per second, counter-clockwise positive.
+     * @param heading Current heading of the robot in radians, counter-clockwise positive.
+     */
+    public void driveVelocity(double vx, double vy, double omega, double heading) {
+        // drive() turns the translation by the heading it's given, so hand it the inverse to get to the robot frame.
+        double rotation = omega * kinematics.getMaxRadius() / kMaxWheelSpeed;
+        drive(-heading, rotation, vx / kMaxWheelSpeed, vy / kMaxWheelSpeed);
+    }
+
+    /**
+     * Follows a trajectory, correcting for how far odometry says the robot is off it.
+     * @param trajectory Trajectory to follow, in the odometry frame.
+     * @param time Time since the trajectory started in seconds.
+     */
+    public void followTrajectory(Trajectory trajectory, double time) {
+        trajectory.sample(time, trajectoryState);
+        odometry.getPose(followPose);
+        double vx = trajectoryState[3] + kTrajectoryP * (trajectoryState[0] - followPose[0]);
+        double vy = trajectoryState[4] + kTrajectoryP * (trajectoryState[1] - followPose[1]);
+        double omega = trajectoryState[5] + kTrajectoryP * MathUtils.normalizeAngleRad2(trajectoryState[2] - followPose[2]);
+        driveVelocity(vx, vy, omega, followPose[2]);
+    }
+
+    /**
+     * @return Generator for trajectories within the limits of this drivetrain.
+     */
+    public TrajectoryGenerator getTrajectoryGenerator() {
+        return trajectoryGenerator;
+    }
+
+    /**
+     * Runs the steering PID and sends the commands for the latest setpoints from {@link #drive}.
+     * This is what the steering task runs; it can also be called directly, for example from a simulation.
+     */
+    public void runSteering() {
+        if(autotuner != null) {
+            runAutotune();
+            return;
+        }
+        setpoints.read(controlBuffer);
+        calculateModules(controlBuffer, controlBuffer, 0, modules.length);
+        long computed = System.nanoTime();
+        writeModules();
+        writeNanos = System.nanoTime() - computed;
+        log();
+    }
+
+    /**
+     * Moves the steering PID and the motor writes to a task of their own, so steering
+     * runs faster than the main loop. Call before the scheduler is started.
+     * Keep in mind the steering PID runs once per period, so its I and D gains scale with the rate.
+     * A run that throws stops every module, and the next one carries on from the latest setpoints.
+     * @param scheduler Scheduler to add the task to.
+     * @param hz Rate to run the steering at, for example 500.
+     * @param priority Real-time priority of the task.
+     * @return The steering task.
+     */
+    public RealTimeScheduler.Task runSteeringAt(RealTimeScheduler scheduler, double hz, int priority) {
+        setSteeringRate(hz);
+        return scheduler.addTask("Steering", 1.0 / hz, priority, this::runSteering, this::stopSteering);
+    }
+
+    /**
+     * Hands steering over to {@link #runSteering()}, to be called at the given rate by someone else,
+     * so {@link #drive} only publishes setpoints. This is what {@link #runSteeringAt} does before
+     * adding its task; a simulation calls it to step the steering itself.
+     * @param hz Rate {@link #runSteering()} will be called at.
+     */
+    public void setSteeringRate(double hz) {
+        // Start from a stopped drive until the main loop publishes something.
+        setpoints.write(publishBuffer);
+        steeringTaskRunning = true;
+        steeringPeriod = 1.0 / hz;
+    }
+
+    // If steering throws, the Spark MAXes would keep their last velocities with nothing steering them.
+    private void stopSteering() {
+        autotuner = null;
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].stop();
+        }
+    }
+
+    /**
+     * Starts tuning the steering and drive loops of one module with relay experiments, see
+     * {@link ModuleAutotuner}. The other modules are stopped, and driving resumes when it's done.
+     * @param id Module to tune.
+     * @param rule How aggressive the proposed gains should be.
+     * @return The tuner. Call its {@link ModuleAutotuner#periodic()} from the main loop to apply and print the results.
+     */
+    public ModuleAutotuner startAutotune(ModuleID id, RelayAutotuner.Rule rule) {
+        stop();
+        autotuneIndex = id.ordinal();
+        autotuneStoppedOthers = false;
+        ModuleAutotuner tuner = new ModuleAutotuner(modules[autotuneIndex], steeringPid, clock, steeringPeriod, rule);
+        autotuner = tuner;
+        return tuner;
+    }
+
+    /**
+     * @return Whether a module is being tuned.
+     */
+    public boolean isAutotuning() {
+        return autotuner != null;
+    }
+
+    private void runAutotune() {
+        ModuleAutotuner tuner = autotuner;
+        if(!autotuneStoppedOthers) {
+            for(int i = 0; i < modules.length; i++) {
+                if(i != autotuneIndex)
+                    modules[i].stop();
+            }
+            autotuneStoppedOthers = true;
+        }
+        DiffSwerveModuleSpark module = modules[autotuneIndex];
+        module.readSensors(clock.getMicros());
+        tuner.update();
+        if(tuner.isDone())
+            autotuner = null;
+    }
+
+    private void calculateModules(double[] angles, double[] speeds, int angleOffset, int speedOffset) {
+        // Read every sensor back-to-back first, so all modules work from readings taken together.
+        long now = clock.getMicros();
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].readSensors(now);
+        }
+        odometry.update();
+        long effectTime = now + commandLatency;
+        boolean compensate = latencyCompensation;
+        for(int i = 0; i < modules.length; i++) {
+            // Wraps the angle to [-pi, pi].
+            modules[i].prepare(MathUtils.normalizeAngleRad2(angles[angleOffset + i]), speeds[speedOffset + i] * kMaxVelocity, now);
+            pidActual[i] = compensate ? modules[i].getPredictedModulePosNative(now, effectTime) : modules[i].getModulePosNative();
+            pidSetpoint[i] = modules[i].getAngleSetpoint();
+        }
+        steeringPid.calculate(pidActual, pidSetpoint, pidOutput);
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].apply(pidOutput[i]);
+        }
+    }
+
+    private void writeModules() {
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].write();
+        }
+    }
+
+    /**
+     * Sets how long a steering command takes to take effect once sent. The steering PID then works on
+     * where each module is predicted to be at that moment, from its timestamped readings and velocity,
+     * instead of where it was when the encoders were measured. Cutting that delay out of the loop lets
+     * the steering gains go higher before it oscillates. Also set from the dashboard.
+     * @param micros Time from sending a command to the controller acting on it, in microseconds.
+     */
+    public void setCommandLatency(long micros) {
+        commandLatency = micros;
+        commandLatencyTunable.set(micros);
+    }
+
+    /**
+     * Filters the velocity of every drive motor. Call before the steering task starts.
+     * @param filters Creates a filter for each motor, for example {@code () -> new MedianFilter(3)}.
+     */
+    public void setVelocityFilter(Supplier<Filter> filters) {
+        for(DiffSwerveModuleSpark module : modules) {
+            module.setVelocityFilters(filters.get(), filters.get());
+        }
+    }
+
+    /**
+     * @param enabled Whether the steering PID works on predicted module positions (the default) or on
+     *        the readings as they are.
+     */
+    public void setLatencyCompensation(boolean enabled) {
+        latencyCompensation = enabled;
+    }
+
+    /**
+     * Moves the point the robot rotates about. Call from the same thread as {@link #drive}.
+     * @param x X position of the center of rotation, in the same frame as the module positions (inches).
+     * @param y Y position of the center of rotation.
+     */
+    public void setCenterOfRotation(double x, double y) {
+        kinematics.setCenterOfRotation(x, y);
+    }
+
+    /**
+     * @return Odometry, updated every time the modules are calculated.
+     */
+    public SwerveOdometry getOdometry() {
+        return odometry;
+    }
+
+    /**
+     * @return Kinematics of the module layout.
+     */
+    public SwerveKinematics getKinematics() {
+        return kinematics;
+    }
+
+    /**
+     * @param profiler Profiler to mark the kinematics, PID and CAN write phases on, or {@code null}.
+     */
+    public void setProfiler(LoopProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * @param logger Logger for module setpoints, encoders, PID terms and timing, or {@code null}.
+     */
+    public void setFlightLogger(FlightLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Forgets the state of the steering controllers and odometry, and any published setpoints, as if
+     * just constructed. For reusing a drivetrain in simulation after its motors were reset.
+     */
+    public void reset() {
+        steeringPid.reset();
+        odometry.reset();
+        for(DiffSwerveModuleSpark module : modules) {
+            module.reset();
+        }
+        if(steeringTaskRunning) {
+            Arrays.fill(publishBuffer, 0);
+            setpoints.write(publishBuffer);
+        }
+    }
+
+    /**
+     * @return Steering controllers shared by all modules. Gains set on them take effect on the next tick.
+     */
+    public PidBank getSteeringPid() {
+        return steeringPid;
+    }
+
+    /**
+     * Stops every module.
+     */
+    public void stop() {
+        if(steeringTaskRunning) {
+            // Only the steering task talks to the modules, so just ask it to stop.
+            for(int i = 0; i < modules.length; i++) {
+                publishBuffer[modules.length + i] = 0;
+            }
+            setpoints.write(publishBuffer);
+            return;
+        }
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].stop();
+        }
+    }
+
+    /**
+     * @param id Position of the module.
+     * @return The module at that position.
+     */
+    public DiffSwerveModuleSpark getModule(ModuleID id) {
+        return modules[id.ordinal()];
+    }
+
+    /**
+     * @return Time spent on kinematics and steering PID during the last {@link #drive}, in nanoseconds.
+     *         Only covers the kinematics while the steering task is running.
+     */
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    /**
+     * Time spent sending motor commands during the last {@link #drive} or {@link #runSteering()}, in nanoseconds.
+     * This is also the largest skew between the first and the last module getting its setpoint.
+     * @return Write time in nanoseconds.
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public void printTelemetry() {
+        for(int i = 0; i < modules.length; i++) {
+            modules[i].printTelemetry();
+        }
+        Telemetry.put(computeKey, computeNanos / 1000.0);
+        Telemetry.put(writeKey, writeNanos / 1000.0);
+        odometry.getPose(telemetryPose);
+        Telemetry.put(poseXKey, telemetryPose[0]);
+        Telemetry.put(poseYKey, telemetryPose[1]);
+        Telemetry.put(poseHeadingKey, telemetryPose[2]);
+    }
+}
@@ -0,0 +1,220 @@
+package frc.subsystems;
+
+import frc.maths.MathUtils;
+import frc.maths.SwerveKinematics;
+import frc.util.Clock;
+import frc.util.PoseHistory;
+import frc.util.SeqLock;
+
+/**
+ * Tracks the pose of the robot from the encoders of the differential modules.
+ * Each update takes how far every wheel rolled and which way it pointed since the last update,
+ * fits one rigid-body motion to all of them with {@link SwerveKinematics#toChassisSpeeds},
+ * and moves the pose along the arc that motion describes rather than a straight line.
+ * Poses are in inches and radians, in the frame the robot started in (or the last reset),
+ * and are kept in a {@link PoseHistory} so they can be looked up by time.
+ *
+ * <p>Meant to be updated from the steering task right after the sensors are read, so it runs at
+ * that task's rate instead of the main loop's. Nothing is allocated per update. Only one thread may
+ * update; any other thread can read the pose and the history without a lock, so a reader never holds
+ * up the steering task. Resets can come from any one other thread too, and take effect on the next update.
+ */
+public class SwerveOdometry {
+    // About 1.3 s at 200 Hz.
+    public static final int kHistorySize = 256;
+    // Kinds of reset request.
+    private static final double kResetPose = 0, kResetAll = 1;
+
+    private final DiffSwerveModuleSpark[] modules;
+    private final SwerveKinematics kinematics;
+    private final Clock clock;
+    private final PoseHistory history = new PoseHistory(kHistorySize);
+
+    // Update state, reused every tick.
+    private final double[] lastDistance;
+    private final double[] lastAngle;
+    private final double[] moduleDx;
+    private final double[] moduleDy;
+    private final double[] twist = new double[3];
+    private boolean hasLast;
+    private double lastGyroHeading;
+
+    // Only touched by the updating thread.
+    private double x, y, heading;
+    private final double[] poseBuffer = new double[3];
+    private final SeqLock pose = new SeqLock(3);
+
+    // Resets waiting for the updating thread: {x, y, heading, kind}.
+    private final SeqLock resets = new SeqLock(4);
+    private final double[] resetBuffer = new double[4];
+    private final double[] resetRequest = new double[4];
+    private long handledResets;
+
+    /**
+     * @param modules Modules to track, in the same order as the positions.
+     * @param moduleX X positions of the modules relative to the center of the robot, in inches.
+     * @param moduleY Y positions of the modules relative to the center of the robot, in inches.
+     * @param clock Clock to timestamp the poses with.
+     */
+    public SwerveOdometry(DiffSwerveModuleSpark[] modules, double[] moduleX, double[] moduleY, Clock clock) {
+        this.modules = modules;
+        // Always about the center of the robot, whatever the drive is rotating around.
+        kinematics = new SwerveKinematics(moduleX, moduleY);
+        this.clock = clock;
+        lastDistance = new double[modules.length];
+        lastAngle = new double[modules.length];
+        moduleDx = new double[modules.length];
+        moduleDy = new double[modules.length];
+    }
+
+    /**
+     * Moves the pose by what the wheels measured since the last update.
+     * Uses the readings from the last {@link DiffSwerveModuleSpark#readSensors(long)} of every module.
+     */
+    public void update() {
+        applyReset();
+        if(!readModules())
+            return;
+        integrate(twist[0], twist[1], twist[2]);
+    }
+
+    /**
+     * Like {@link #update()}, but takes the change in heading from a gyro instead of the wheels,
+     * which is much less affected by wheel slip.
+     * @param gyroHeading Heading from the gyro in radians, counter-clockwise positive.
+     */
+    public void update(double gyroHeading) {
+        applyReset();
+        double lastGyro = lastGyroHeading;
+        lastGyroHeading = gyroHeading;
+        if(!readModules())
+            return;
+        integrate(twist[0], twist[1], MathUtils.normalizeAngleRad2(gyroHeading - lastGyro));
+    }
+
+    /**
+     * Reads every module and fits the chassis motion since the last call into {@link #twist}.
+     * @return {@code false} on the first call, when there's nothing to compare with.
+     */
+    private boolean readModules() {
+        for(int i = 0; i < modules.length; i++) {
+            double distance = modules[i].getWheelDistance();
+            double angle = modules[i].getModuleAngle();
+            if(hasLast) {
+                double travelled = distance - lastDistance[i];
+                // The module may have turned while rolling, so use the angle halfway through.
+                double midAngle = (angle + lastAngle[i]) / 2;
+                moduleDx[i] = travelled * MathUtils.cos(midAngle);
+                moduleDy[i] = travelled * MathUtils.sin(midAngle);
+            }
+            lastDistance[i] = distance;
+            lastAngle[i] = angle;
+        }
+        if(!hasLast) {
+            hasLast = true;
+            history.add(clock.getMicros(), x, y, heading);
+            publish();
+            return false;
+        }
+        kinematics.toChassisSpeeds(moduleDx, moduleDy, twist);
+        return true;
+    }
+
+    /**
+     * Moves the pose along the arc of a constant-velocity motion.
+     * @param dx Distance moved forward in the robot frame at the start of the motion.
+     * @param dy Distance moved sideways in the robot frame.
+     * @param dTheta Change in heading.
+     */
+    private void integrate(double dx, double dy, double dTheta) {
+        // sin(t)/t and (1 - cos(t))/t, with their series near zero where they would divide by zero.
+        double s, c;
+        if(Math.abs(dTheta) < 1e-9) {
+            s = 1 - dTheta * dTheta / 6;
+            c = dTheta / 2;
+        } else {
+            s = MathUtils.sin(dTheta) / dTheta;
+            c = (1 - MathUtils.cos(dTheta)) / dTheta;
+        }
+        double robotDx = dx * s - dy * c;
+        double robotDy = dx * c + dy * s;
+
+        double cos = MathUtils.cos(heading);
+        double sin = MathUtils.sin(heading);
+        x += robotDx * cos - robotDy * sin;
+        y += robotDx * sin + robotDy * cos;
+        heading = MathUtils.normalizeAngleRad2(heading + dTheta);
+        history.add(clock.getMicros(), x, y, heading);
+        publish();
+    }
+
+    private void publish() {
+        poseBuffer[0] = x;
+        poseBuffer[1] = y;
+        poseBuffer[2] = heading;
+        pose.write(poseBuffer);
+    }
+
+    private void applyReset() {
+        long requests = resets.read(resetBuffer);
+        if(requests == handledResets)
+            return;
+        handledResets = requests;
+        x = resetBuffer[0];
+        y = resetBuffer[1];
+        heading = resetBuffer[2];
+        history.clear();
+        if(resetBuffer[3] == kResetAll) {
+            hasLast = false;
+            lastGyroHeading = 0;
+        } else {
+            history.add(clock.getMicros(), x, y, heading);
+        }
+        publish();
+    }
+
+    private void requestReset(double x, double y, double heading, double kind) {
+        resetRequest[0] = x;
+        resetRequest[1] = y;
+        resetRequest[2] = heading;
+        resetRequest[3] = kind;
+        resets.write(resetRequest);
+    }
+
+    /**
+     * Sets the pose, for example at the start of autonomous. Clears the history.
+     * Takes effect on the next update.
+     * @param x X position in inches.
+     * @param y Y position in inches.
+     * @param heading Heading in radians.
+     */
+    public void resetPose(double x, double y, double heading) {
+        requestReset(x, y, heading, kResetPose);
+    }
+
+    /**
+     * Forgets everything, as if just constructed. The pose goes back to zero and the next update
+     * only takes the wheel readings to measure from, so call it when the encoders were reset too.
+     * Takes effect on the next update.
+     */
+    public void reset() {
+        requestReset(0, 0, 0, kResetAll);
+    }
+
+    /**
+     * @param pose Output buffer for the latest {@code {x, y, heading}}.
+     */
+    public void getPose(double[] pose) {
+        this.pose.read(pose);
+    }
+
+    /**
+     * Looks up where the robot was at a recent time, interpolating between updates.
+     * @param timeMicros Time on the odometry clock in microseconds.
+     * @param pose Output buffer for {@code {x, y, heading}}.
+     * @return {@code false} if there has been no update yet.
+     */
+    public boolean getPoseAt(long timeMicros, double[] pose) {
+        return history.getPose(timeMicros, pose);
+    }
+}
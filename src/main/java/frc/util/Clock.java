@@ -0,0 +1,19 @@
+package frc.util;
+
+/**
+ * Source of time for anything that needs to be run off the robot.
+ * On the robot use {@code RobotController::getFPGATime}; in simulation use {@link frc.sim.SimClock}.
+ */
+@FunctionalInterface
+public interface Clock {
+
+    /**
+     * Wall clock based on {@link System#nanoTime()}.
+     */
+    Clock SYSTEM = () -> System.nanoTime() / 1000;
+
+    /**
+     * @return Current time in microseconds.
+     */
+    long getMicros();
+}
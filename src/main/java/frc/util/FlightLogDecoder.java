@@ -0,0 +1,101 @@
+package frc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import frc.util.FlightLogger.RecordType;
+
+/**
+ * Turns flight logs from {@link FlightLogger} into one CSV file per record type.
+ * Runs on a desktop: {@code ./gradlew decodeFlightLog -Plogs=<log dir> -Pout=<output dir>},
+ * or directly with {@code <output dir> <log dirs or files...>} as arguments.
+ */
+public class FlightLogDecoder {
+
+    public static void main(String... args) throws IOException {
+        if(args.length < 2) {
+            System.out.println("Usage: FlightLogDecoder <output dir> <log dir or files...>");
+            return;
+        }
+
+        File outDir = new File(args[0]);
+        outDir.mkdirs();
+
+        Map<RecordType, PrintWriter> writers = new EnumMap<>(RecordType.class);
+        try {
+            for(int i = 1; i < args.length; i++) {
+                for(File file : logFiles(new File(args[i]))) {
+                    int records = decode(file, outDir, writers);
+                    System.out.println(file + ": " + records + " records");
+                }
+            }
+        } finally {
+            for(PrintWriter writer : writers.values()) {
+                writer.close();
+            }
+        }
+    }
+
+    private static File[] logFiles(File file) {
+        if(!file.isDirectory())
+            return new File[] { file };
+        File[] files = file.listFiles((dir, name) -> name.startsWith("flight-") && name.endsWith(".bin"));
+        if(files == null)
+            return new File[0];
+        // The numbers are zero padded, so sorting by name keeps them in order.
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static int decode(File file, File outDir, Map<RecordType, PrintWriter> writers) throws IOException {
+        ByteBuffer buffer;
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+
+        if(buffer.capacity() < FlightLogger.kHeaderSize || buffer.getInt(0) != FlightLogger.kMagic) {
+            System.out.println("ERROR: " + file + " is not a flight log");
+            return 0;
+        }
+        int version = buffer.getInt(4);
+        int recordSize = buffer.getInt(8);
+        if(version != FlightLogger.kVersion || recordSize != FlightLogger.kRecordSize) {
+            System.out.println("ERROR: " + file + " has version " + version + ", expected " + FlightLogger.kVersion);
+            return 0;
+        }
+
+        int records = 0;
+        for(int p = FlightLogger.kHeaderSize; p + recordSize <= buffer.capacity(); p += recordSize) {
+            int typeId = buffer.getShort(p + 8);
+            // Never written, or a slot claimed by a thread that hadn't finished it.
+            RecordType type = RecordType.fromId(typeId);
+            if(type == null)
+                continue;
+
+            PrintWriter writer = writers.get(type);
+            if(writer == null) {
+                writer = new PrintWriter(new File(outDir, type.name().toLowerCase() + ".csv"));
+                writer.println("time_us,index,sequence," + String.join(",", type.fields));
+                writers.put(type, writer);
+            }
+
+            StringBuilder line = new StringBuilder();
+            line.append(buffer.getLong(p)).append(',')
+                .append(buffer.getShort(p + 10)).append(',')
+                .append(buffer.getInt(p + 12));
+            for(int i = 0; i < type.fields.length; i++) {
+                line.append(',').append(buffer.getDouble(p + 16 + i * 8));
+            }
+            writer.println(line);
+            records++;
+        }
+        return records;
+    }
+}
@@ -0,0 +1,263 @@
+package frc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Appends fixed-size binary records to memory-mapped files, so logging a record is just a few stores.
+ * Files are named {@code flight-NNNNN.bin} and numbered on from whatever is already in the directory.
+ * When a file fills up logging moves on to the next one, which {@link #service()} mapped ahead of time
+ * on a low-priority thread, and only the newest {@code maxFiles} are kept. Logging takes no locks and
+ * never touches the disk, so it is safe from the real-time threads.
+ * Use {@link FlightLogDecoder} to turn the files into CSV.
+ *
+ * <p>File layout: a {@value #kHeaderSize} byte header (magic, version, record size, file number,
+ * start time), then records of {@value #kRecordSize} bytes: timestamp in microseconds (long),
+ * record type (short), index (short), sequence number (int), and six doubles whose meaning depends
+ * on the type. Unused space is zero. Threads claim slots in order but may finish them out of order, so a
+ * record with type 0 is skipped rather than taken as the end of the file.
+ */
+public class FlightLogger {
+    public static final int kMagic = 0x464C4F47; // "FLOG"
+    public static final int kVersion = 1;
+    public static final int kHeaderSize = 64;
+    public static final int kRecordSize = 64;
+    public static final int kValuesPerRecord = 6;
+
+    /**
+     * Kinds of records and what their values mean. The index is the module, or 0 if it doesn't apply.
+     */
+    public enum RecordType {
+        JOYSTICK(1, "x", "y", "rotation"),
+        MODULE_SETPOINT(2, "angle", "speed", "motor1_setpoint", "motor2_setpoint"),
+        ENCODER(3, "motor1_position", "motor1_velocity", "motor2_position", "motor2_velocity"),
+        PID(4, "setpoint", "actual", "p", "i", "d", "output"),
+        LOOP_TIMING(5, "compute_us", "write_us");
+
+        public final int id;
+        public final String[] fields;
+
+        RecordType(int id, String... fields) {
+            this.id = id;
+            this.fields = fields;
+        }
+
+        /**
+         * @param id Type id stored in the file.
+         * @return The record type, or {@code null} if the id is unknown.
+         */
+        public static RecordType fromId(int id) {
+            for(RecordType type : values()) {
+                if(type.id == id)
+                    return type;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One mapped file. Writers claim their slot with a single add on {@link #position}, so several
+     * threads can log into it at once without a lock.
+     */
+    private static class Segment {
+        final MappedByteBuffer buffer;
+        final int fileNumber;
+        final AtomicInteger position = new AtomicInteger(kHeaderSize);
+
+        Segment(MappedByteBuffer buffer, int fileNumber) {
+            this.buffer = buffer;
+            this.fileNumber = fileNumber;
+        }
+    }
+
+    private final File directory;
+    private final int fileSize;
+    private final int maxFiles;
+    private final Clock clock;
+
+    // Written by the loggers, who only ever swap current for next.
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    // Mapped ahead of time by service(), taken by whichever logger fills current.
+    private final AtomicReference<Segment> next = new AtomicReference<>();
+    // Filled files waiting for service() to write them out.
+    private final ConcurrentLinkedQueue<Segment> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    // Only touched by service() and the constructor.
+    private int lastFileNumber;
+    private boolean failed;
+
+    /**
+     * Maps the first file, and the one after it so a full file never has to wait for
+     * {@link #service()}. Slow; call it before the control loop starts.
+     * @param directory Directory to put the logs in, for example {@code /home/lvuser/flightlogs}.
+     * @param fileSize Size of each file in bytes.
+     * @param maxFiles Number of files to keep.
+     * @param clock Clock to timestamp the records with.
+     */
+    public FlightLogger(File directory, int fileSize, int maxFiles, Clock clock) {
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.maxFiles = maxFiles;
+        this.clock = clock;
+
+        directory.mkdirs();
+        lastFileNumber = findLastFileNumber(directory);
+        Segment first = mapNextFile();
+        if(first != null) {
+            first.buffer.putLong(16, clock.getMicros());
+            current.set(first);
+            deleteOldFiles(first.fileNumber);
+        }
+        service();
+    }
+
+    /**
+     * Appends a record with up to four values.
+     */
+    public void log(RecordType type, int index, double a, double b, double c, double d) {
+        log(type, index, a, b, c, d, 0, 0);
+    }
+
+    /**
+     * Appends a record. Safe to call from several threads, and never blocks: when a file fills up it
+     * switches to the one {@link #service()} mapped ahead, and if that isn't ready yet the record is dropped.
+     * @param type Kind of record.
+     * @param index Module index, or 0.
+     */
+    public void log(RecordType type, int index, double a, double b, double c, double d, double e, double f) {
+        Segment segment = current.get();
+        int p;
+        while(true) {
+            if(segment == null)
+                return;
+            // Checked first so a full file that can't be switched doesn't count up forever.
+            if(segment.position.get() <= fileSize - kRecordSize) {
+                p = segment.position.getAndAdd(kRecordSize);
+                if(p + kRecordSize <= fileSize)
+                    break;
+            }
+            segment = switchFile(segment);
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(p, clock.getMicros());
+        buffer.putShort(p + 10, (short) index);
+        buffer.putInt(p + 12, sequence.getAndIncrement());
+        buffer.putDouble(p + 16, a);
+        buffer.putDouble(p + 24, b);
+        buffer.putDouble(p + 32, c);
+        buffer.putDouble(p + 40, d);
+        buffer.putDouble(p + 48, e);
+        buffer.putDouble(p + 56, f);
+        // Last, so a record with a type is complete.
+        buffer.putShort(p + 8, (short) type.id);
+    }
+
+    /**
+     * Moves on from a full file.
+     * @return The file to log into now, or null if none is ready and the record has to be dropped.
+     */
+    private Segment switchFile(Segment full) {
+        Segment now = current.get();
+        if(now != full)
+            return now; // Another thread already switched.
+        Segment spare = next.get();
+        if(spare == null) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        if(next.compareAndSet(spare, null)) {
+            spare.buffer.putLong(16, clock.getMicros());
+            current.set(spare);
+            retired.add(full);
+            return spare;
+        }
+        return current.get();
+    }
+
+    /**
+     * Does the slow part of logging: writes out filled files, deletes the oldest ones and maps the
+     * next file ahead of time. Call it regularly from a low-priority thread, well before a file fills up.
+     */
+    public void service() {
+        Segment segment;
+        while((segment = retired.poll()) != null) {
+            segment.buffer.force();
+            deleteOldFiles(current.get().fileNumber);
+        }
+        if(next.get() == null && !failed)
+            next.set(mapNextFile());
+        long drops = dropped.getAndSet(0);
+        if(drops > 0)
+            System.out.println("ERROR: Dropped " + drops + " flight log records, no file was ready");
+    }
+
+    /**
+     * Flushes the current file to disk. Slow, don't call from the control loop.
+     */
+    public void flush() {
+        Segment segment = current.get();
+        if(segment != null)
+            segment.buffer.force();
+    }
+
+    private Segment mapNextFile() {
+        int number = lastFileNumber + 1;
+        File file = fileFor(directory, number);
+        MappedByteBuffer buffer;
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(fileSize);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        } catch(IOException e) {
+            System.out.println("ERROR: Couldn't open flight log " + file + ": " + e.getMessage());
+            failed = true;
+            return null;
+        }
+        lastFileNumber = number;
+
+        buffer.putInt(0, kMagic);
+        buffer.putInt(4, kVersion);
+        buffer.putInt(8, kRecordSize);
+        buffer.putInt(12, number);
+        return new Segment(buffer, number);
+    }
+
+    // Keeps at most maxFiles, counting back from the one being written.
+    private void deleteOldFiles(int newest) {
+        for(int old = newest - maxFiles; old > 0; old--) {
+            File oldFile = fileFor(directory, old);
+            if(!oldFile.exists())
+                break;
+            oldFile.delete();
+        }
+    }
+
+    private static File fileFor(File directory, int number) {
+        return new File(directory, String.format("flight-%05d.bin", number));
+    }
+
+    private static int findLastFileNumber(File directory) {
+        int last = 0;
+        String[] names = directory.list();
+        if(names == null)
+            return 0;
+        for(String name : names) {
+            if(!name.startsWith("flight-") || !name.endsWith(".bin"))
+                continue;
+            try {
+                last = Math.max(last, Integer.parseInt(name.substring(7, name.length() - 4)));
+            } catch(NumberFormatException e) {
+                // Not one of ours.
+            }
+        }
+        return last;
+    }
+}
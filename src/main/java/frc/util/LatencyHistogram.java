@@ -0,0 +1,111 @@
+package frc.util;
+
+/**
+ * Fixed-size latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values below 64 us get their own bucket; above that each power of two is split into
+ * 32 buckets, so any recorded value is reported within about 3% of its real value.
+ * All memory is allocated up front, and recording is a handful of integer operations.
+ * Not thread-safe; record and read from the same thread.
+ */
+public class LatencyHistogram {
+    private static final int kLinearBuckets = 64;
+    private static final int kSubBuckets = 32;
+    private static final int kSubBucketBits = 5;
+    // Covers up to 2^31 us, which is a bit over half an hour.
+    private static final int kBucketCount = kLinearBuckets + 26 * kSubBuckets;
+
+    private final long[] counts = new long[kBucketCount];
+    private long totalCount;
+    private long max;
+    private long sum;
+
+    /**
+     * Records a value.
+     * @param micros Value in microseconds. Negative values are recorded as zero.
+     */
+    public void record(long micros) {
+        if(micros < 0)
+            micros = 0;
+        counts[bucketIndex(micros)]++;
+        totalCount++;
+        sum += micros;
+        if(micros > max)
+            max = micros;
+    }
+
+    /**
+     * Records a value.
+     * @param nanos Value in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    /**
+     * Gets the value below which a given percentage of the recorded values fall.
+     * @param percentile Percentile between 0 and 100.
+     * @return Value at the percentile in microseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if(totalCount == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for(int i = 0; i < kBucketCount; i++) {
+            seen += counts[i];
+            if(seen >= target)
+                return Math.min(bucketHighValue(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * @return Largest recorded value in microseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return Mean of the recorded values in microseconds.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @return Number of recorded values.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset() {
+        for(int i = 0; i < kBucketCount; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    private static int bucketIndex(long value) {
+        if(value < kLinearBuckets)
+            return (int) value;
+        // Shift the value so it lands in [32, 64), the shift picks the bucket group.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - kSubBucketBits;
+        int index = kLinearBuckets + (shift - 1) * kSubBuckets + (int) (value >>> shift) - kSubBuckets;
+        return Math.min(index, kBucketCount - 1);
+    }
+
+    private static long bucketHighValue(int index) {
+        if(index < kLinearBuckets)
+            return index;
+        int shift = (index - kLinearBuckets) / kSubBuckets + 1;
+        long subBucket = (index - kLinearBuckets) % kSubBuckets + kSubBuckets;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
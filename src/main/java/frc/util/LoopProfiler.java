@@ -0,0 +1,142 @@
+package frc.util;
+
+/**
+ * Times each phase of the robot loop and reports percentiles to the dashboard.
+ * Call {@link #startLoop()} at the top of the loop, {@link #mark(Phase)} at the end of each phase,
+ * and {@link #endLoop()} once everything is done. Nothing is allocated while recording,
+ * so it can stay on in competition. It can be turned off from the dashboard with "Loop Profiler Enabled".
+ */
+public class LoopProfiler {
+
+    /**
+     * Parts of the loop that get timed. Each phase runs from the previous mark to its own.
+     */
+    public enum Phase {
+        INPUT("Input"), KINEMATICS("Kinematics"), PID("PID"), CAN_WRITE("CAN Write"), TELEMETRY("Telemetry");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    private static final Phase[] kPhases = Phase.values();
+
+    private final long budgetNanos;
+    private final int reportInterval;
+    private final TunableBoolean enabled;
+
+    // One histogram per phase, followed by the whole loop and the time between loop starts.
+    private final LatencyHistogram[] histograms = new LatencyHistogram[kPhases.length + 2];
+    private final int loopIndex = kPhases.length;
+    private final int periodIndex = kPhases.length + 1;
+
+    // Dashboard keys, built once.
+    private final int[] p50Keys = new int[histograms.length];
+    private final int[] p99Keys = new int[histograms.length];
+    private final int[] maxKeys = new int[histograms.length];
+    private final int overrunsKey;
+
+    private boolean running;
+    private long loopStart;
+    private long lastMark;
+    private long lastLoopStart;
+    private long overruns;
+    private int loopsSinceReport;
+
+    /**
+     * @param periodSeconds Loop period, anything longer counts as an overrun.
+     * @param reportInterval Number of loops between reports.
+     */
+    public LoopProfiler(double periodSeconds, int reportInterval) {
+        budgetNanos = (long) (periodSeconds * 1e9);
+        this.reportInterval = reportInterval;
+        enabled = TuningRegistry.bool("Loop Profiler Enabled", true);
+
+        for(int i = 0; i < histograms.length; i++) {
+            String name;
+            if(i == loopIndex)
+                name = "Loop Total";
+            else if(i == periodIndex)
+                name = "Loop Period";
+            else
+                name = "Loop " + kPhases[i].displayName;
+
+            histograms[i] = new LatencyHistogram();
+            p50Keys[i] = Telemetry.register(name + " p50 us");
+            p99Keys[i] = Telemetry.register(name + " p99 us");
+            maxKeys[i] = Telemetry.register(name + " Max us");
+        }
+        overrunsKey = Telemetry.register("Loop Overruns");
+    }
+
+    /**
+     * Marks the start of a loop.
+     */
+    public void startLoop() {
+        running = enabled.get();
+        if(!running)
+            return;
+
+        long now = System.nanoTime();
+        if(lastLoopStart != 0)
+            histograms[periodIndex].recordNanos(now - lastLoopStart);
+        lastLoopStart = now;
+        loopStart = now;
+        lastMark = now;
+    }
+
+    /**
+     * Marks the end of a phase. The phase is timed from the previous mark.
+     * @param phase Phase that just finished.
+     */
+    public void mark(Phase phase) {
+        if(!running)
+            return;
+
+        long now = System.nanoTime();
+        histograms[phase.ordinal()].recordNanos(now - lastMark);
+        lastMark = now;
+    }
+
+    /**
+     * Marks the end of the loop, and publishes the stats every {@code reportInterval} loops.
+     */
+    public void endLoop() {
+        if(!running)
+            return;
+        running = false;
+
+        long duration = System.nanoTime() - loopStart;
+        histograms[loopIndex].recordNanos(duration);
+        if(duration > budgetNanos)
+            overruns++;
+
+        if(++loopsSinceReport >= reportInterval) {
+            report();
+            loopsSinceReport = 0;
+        }
+    }
+
+    /**
+     * @return Number of loops that took longer than the loop period.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Publishes p50/p99/max of every phase, then starts a new reporting window.
+     */
+    private void report() {
+        for(int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            Telemetry.put(p50Keys[i], histogram.getPercentile(50));
+            Telemetry.put(p99Keys[i], histogram.getPercentile(99));
+            Telemetry.put(maxKeys[i], histogram.getMax());
+            histogram.reset();
+        }
+        Telemetry.put(overrunsKey, overruns);
+    }
+}
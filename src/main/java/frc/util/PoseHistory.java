@@ -0,0 +1,187 @@
+package frc.util;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+import frc.maths.MathUtils;
+
+/**
+ * Fixed-size ring of timestamped robot poses, for looking up where the robot was at some
+ * point in the recent past, for example when a camera frame was taken.
+ * Poses are {@code {x, y, heading}} arrays. Once full, the oldest pose is overwritten.
+ * Nothing is allocated after construction.
+ *
+ * <p>One thread may {@link #add} and {@link #clear()}, and any number of threads may read at the same
+ * time without a lock, like {@link SeqLock}: a read that races with a write retries, so it always
+ * sees the ring as it was between two writes. The writer never waits.
+ */
+public class PoseHistory {
+    private final long[] times;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] headings;
+    private final int mask;
+    private int head;
+    private int count;
+    // Odd while a write is in progress.
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param capacity Number of poses to keep, rounded up to a power of two.
+     */
+    public PoseHistory(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        times = new long[size];
+        xs = new double[size];
+        ys = new double[size];
+        headings = new double[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a pose. Times have to be added in order.
+     * @param timeMicros Time of the pose in microseconds.
+     * @param x X position.
+     * @param y Y position.
+     * @param heading Heading in radians.
+     */
+    public void add(long timeMicros, double x, double y, double heading) {
+        long seq = beginWrite();
+        times[head] = timeMicros;
+        xs[head] = x;
+        ys[head] = y;
+        headings[head] = heading;
+        head = (head + 1) & mask;
+        if(count <= mask)
+            count++;
+        sequence.setRelease(seq + 2);
+    }
+
+    /**
+     * Gets the pose at a time, interpolating between the two poses around it.
+     * Times before the oldest or after the newest pose get that pose.
+     * @param timeMicros Time to look up in microseconds.
+     * @param pose Output buffer for {@code {x, y, heading}}.
+     * @return {@code false} if there are no poses yet.
+     */
+    public boolean getPose(long timeMicros, double[] pose) {
+        while(true) {
+            long before = beginRead();
+            boolean found = readPose(timeMicros, pose);
+            if(endRead(before))
+                return found;
+        }
+    }
+
+    private boolean readPose(long timeMicros, double[] pose) {
+        int count = this.count;
+        if(count == 0)
+            return false;
+
+        // Binary search for the first pose at or after the time, in oldest-to-newest order.
+        int low = 0, high = count;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(times[slot(middle, count)] < timeMicros)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        if(low == count) {
+            copy(slot(count - 1, count), pose);
+        } else if(low == 0 || times[slot(low, count)] == timeMicros) {
+            copy(slot(low, count), pose);
+        } else {
+            int before = slot(low - 1, count);
+            int after = slot(low, count);
+            double t = (double) (timeMicros - times[before]) / (times[after] - times[before]);
+            pose[0] = xs[before] + (xs[after] - xs[before]) * t;
+            pose[1] = ys[before] + (ys[after] - ys[before]) * t;
+            // Turn the short way round in case the heading wrapped in between.
+            pose[2] = headings[before] + MathUtils.normalizeAngleRad2(headings[after] - headings[before]) * t;
+        }
+        return true;
+    }
+
+    /**
+     * @return Time of the newest pose in microseconds, or 0 if there are none.
+     */
+    public long getNewestTime() {
+        while(true) {
+            long before = beginRead();
+            int count = this.count;
+            long time = count == 0 ? 0 : times[slot(count - 1, count)];
+            if(endRead(before))
+                return time;
+        }
+    }
+
+    /**
+     * @return Time of the oldest pose in microseconds, or 0 if there are none.
+     */
+    public long getOldestTime() {
+        while(true) {
+            long before = beginRead();
+            int count = this.count;
+            long time = count == 0 ? 0 : times[slot(0, count)];
+            if(endRead(before))
+                return time;
+        }
+    }
+
+    /**
+     * @return Number of poses kept.
+     */
+    public int size() {
+        while(true) {
+            long before = beginRead();
+            int count = this.count;
+            if(endRead(before))
+                return count;
+        }
+    }
+
+    /**
+     * Forgets every pose.
+     */
+    public void clear() {
+        long seq = beginWrite();
+        count = 0;
+        sequence.setRelease(seq + 2);
+    }
+
+    private long beginWrite() {
+        long seq = sequence.get();
+        sequence.setOpaque(seq + 1);
+        VarHandle.storeStoreFence();
+        return seq;
+    }
+
+    private long beginRead() {
+        while(true) {
+            long before = sequence.getAcquire();
+            if((before & 1) == 0)
+                return before;
+            Thread.onSpinWait();
+        }
+    }
+
+    // Whether nothing was written since beginRead(), so what was read in between holds together.
+    private boolean endRead(long before) {
+        VarHandle.loadLoadFence();
+        return sequence.getOpaque() == before;
+    }
+
+    // Takes the count the caller read, so one lookup works from one value. Whatever a racing write
+    // tears is thrown away by endRead(), and the mask keeps even that within the arrays.
+    private int slot(int index, int count) {
+        return (head - count + index) & mask;
+    }
+
+    private void copy(int slot, double[] pose) {
+        pose[0] = xs[slot];
+        pose[1] = ys[slot];
+        pose[2] = headings[slot];
+    }
+}
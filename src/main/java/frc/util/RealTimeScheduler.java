@@ -0,0 +1,253 @@
+package frc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.Threads;
+
+/**
+ * Runs periodic tasks at their own rates, each on its own thread.
+ * Tasks are released on a fixed grid of absolute times, so one slow run doesn't shift the ones after it;
+ * releases that were missed entirely are skipped instead of run back-to-back.
+ * Every task keeps track of its deadline misses, release jitter and run time.
+ * A task that throws is counted and given a chance to make things safe, then runs again on its next
+ * release, so one bad run can't end its thread.
+ * Hand data between tasks with something that doesn't block, such as {@link SeqLock}.
+ */
+public class RealTimeScheduler {
+
+    /**
+     * A periodic task and its timing stats.
+     */
+    public static class Task {
+        private final String name;
+        private final long periodNanos;
+        private final int priority;
+        private final Runnable runnable;
+        private final Runnable onFailure;
+
+        // Two sets of histograms, so the task never waits on the reporter. The task records into
+        // the active one; when asked, it swaps and hands the filled one over until the reporter
+        // has published and cleared it.
+        private final LatencyHistogram[] jitter = { new LatencyHistogram(), new LatencyHistogram() };
+        private final LatencyHistogram[] runTime = { new LatencyHistogram(), new LatencyHistogram() };
+        private int active; // Only touched by the task.
+        private volatile boolean swapRequested;
+        private volatile boolean filledReady;
+        // Only written by the task.
+        private volatile long runs;
+        private volatile long misses;
+        private volatile long failures;
+        private volatile Throwable lastFailure;
+        private long reportedFailures; // Only touched by the reporter.
+
+        private final int jitterKey, runTimeKey, missesKey, failuresKey;
+
+        private Task(String name, double periodSeconds, int priority, Runnable runnable, Runnable onFailure) {
+            this.name = name;
+            this.periodNanos = (long) (periodSeconds * 1e9);
+            this.priority = priority;
+            this.runnable = runnable;
+            this.onFailure = onFailure;
+
+            jitterKey = Telemetry.register(name + " Jitter p99 us");
+            runTimeKey = Telemetry.register(name + " Run Time p99 us");
+            missesKey = Telemetry.register(name + " Deadline Misses");
+            failuresKey = Telemetry.register(name + " Failures");
+        }
+
+        private void record(long jitterNanos, long runNanos, long missed) {
+            if(swapRequested && !filledReady) {
+                active ^= 1;
+                swapRequested = false;
+                filledReady = true;
+            }
+            jitter[active].recordNanos(jitterNanos);
+            runTime[active].recordNanos(runNanos);
+            runs++;
+            misses += missed;
+        }
+
+        private void fail(Throwable failure) {
+            failures++;
+            lastFailure = failure;
+            if(onFailure == null)
+                return;
+            try {
+                onFailure.run();
+            } catch(RuntimeException e) {
+                // Nothing more to do here; the next release tries again.
+            }
+        }
+
+        /**
+         * @return Name of the task.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of times the task has run.
+         */
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return Number of releases that didn't finish before the next one was due, including skipped ones.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return Number of runs that threw.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        // Only from one thread at a time, the reporter.
+        private void report() {
+            if(filledReady) {
+                // The task swapped away from this one, so it's ours until filledReady is cleared.
+                int filled = active ^ 1;
+                Telemetry.put(jitterKey, jitter[filled].getPercentile(99));
+                Telemetry.put(runTimeKey, runTime[filled].getPercentile(99));
+                jitter[filled].reset();
+                runTime[filled].reset();
+                filledReady = false;
+            }
+            swapRequested = true;
+            Telemetry.put(missesKey, misses);
+
+            long failed = failures;
+            Telemetry.put(failuresKey, failed);
+            if(failed != reportedFailures) {
+                System.out.println("ERROR: Task " + name + " threw " + (failed - reportedFailures) + " times, last: " + lastFailure);
+                Throwable last = lastFailure;
+                if(last != null)
+                    last.printStackTrace();
+                reportedFailures = failed;
+            }
+        }
+    }
+
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final boolean realTime;
+    private volatile boolean running;
+
+    /**
+     * @param realTime Whether to give the threads real-time priority. Only works on the roboRIO;
+     *                 use {@code false} when running on a desktop.
+     */
+    public RealTimeScheduler(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    /**
+     * Adds a task. Tasks have to be added before {@link #start()}.
+     * @param name Name of the task, used for its thread and telemetry.
+     * @param periodSeconds Time between releases.
+     * @param priority Real-time priority (1..99, higher runs first), or 0 for a normal thread.
+     *                 Ignored if the scheduler isn't real-time.
+     * @param runnable Code to run every period.
+     * @return The task, to read its stats from.
+     */
+    public Task addTask(String name, double periodSeconds, int priority, Runnable runnable) {
+        return addTask(name, periodSeconds, priority, runnable, null);
+    }
+
+    /**
+     * Adds a task that has to leave things safe when it fails.
+     * @param onFailure Run on the task's thread right after a run throws, for example to stop the
+     *                  motors the task drives. May be null.
+     * @see #addTask(String, double, int, Runnable)
+     */
+    public Task addTask(String name, double periodSeconds, int priority, Runnable runnable, Runnable onFailure) {
+        if(running)
+            throw new IllegalStateException("Tasks have to be added before the scheduler is started");
+        Task task = new Task(name, periodSeconds, priority, runnable, onFailure);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Starts a thread for every task.
+     */
+    public void start() {
+        if(running)
+            return;
+        running = true;
+        for(Task task : tasks) {
+            Thread thread = new Thread(() -> run(task), task.name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops every task after its current run and waits for the threads to finish.
+     */
+    public void stop() {
+        running = false;
+        for(Thread thread : threads) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        threads.clear();
+    }
+
+    /**
+     * Publishes the stats of every task and starts a new reporting window, and prints any failures
+     * since the last report. Cheap enough to run from a low-rate task of its own, but only from one.
+     * The jitter and run time lag one report behind, as the tasks hand their stats over on their next run.
+     */
+    public void report() {
+        for(Task task : tasks) {
+            task.report();
+        }
+    }
+
+    private void run(Task task) {
+        if(realTime && task.priority > 0)
+            Threads.setCurrentThreadPriority(true, task.priority);
+
+        long period = task.periodNanos;
+        long release = System.nanoTime();
+        while(running) {
+            long start = System.nanoTime();
+            try {
+                task.runnable.run();
+            } catch(RuntimeException e) {
+                // Reported from report(), printing here would hold up the next release.
+                task.fail(e);
+            }
+            long end = System.nanoTime();
+
+            // The deadline of a release is the next release. If we ran past it, skip
+            // every release that is already due and wait for the next one instead.
+            long deadline = release + period;
+            long missed = 0;
+            if(end > deadline)
+                missed = (end - deadline) / period + 1;
+            task.record(start - release, end - start, missed);
+            release = deadline + missed * period;
+
+            long remaining;
+            while(running && (remaining = release - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+}
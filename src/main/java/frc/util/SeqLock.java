@@ -0,0 +1,61 @@
+package frc.util;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free hand-off of a fixed number of doubles from one writer thread to any number of readers.
+ * The writer never waits. A reader that races with a write simply retries, so it always sees a
+ * complete set of values from a single write, and never allocates.
+ * Only one thread may call {@link #write(double[])}.
+ */
+public class SeqLock {
+    private final double[] values;
+    // Odd while a write is in progress.
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param size Number of doubles to hand off.
+     */
+    public SeqLock(int size) {
+        values = new double[size];
+    }
+
+    /**
+     * @return Number of doubles handed off.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Publishes a new set of values.
+     * @param source Values to publish, at least {@link #size()} long.
+     */
+    public void write(double[] source) {
+        long seq = sequence.get();
+        sequence.setOpaque(seq + 1);
+        VarHandle.storeStoreFence();
+        System.arraycopy(source, 0, values, 0, values.length);
+        sequence.setRelease(seq + 2);
+    }
+
+    /**
+     * Copies the latest published values.
+     * @param destination Array to copy into, at least {@link #size()} long.
+     * @return Number of writes published so far, which can be used to tell if anything changed.
+     */
+    public long read(double[] destination) {
+        while(true) {
+            long before = sequence.getAcquire();
+            if((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            System.arraycopy(values, 0, destination, 0, values.length);
+            VarHandle.loadLoadFence();
+            if(sequence.getOpaque() == before)
+                return before >>> 1;
+        }
+    }
+}
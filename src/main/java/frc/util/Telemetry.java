@@ -0,0 +1,168 @@
+package frc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Publishes numbers to the dashboard without doing any NetworkTables work on the control loop.
+ * Register every key once with {@link #register(String)} and keep the handle; {@link #put(int, double)}
+ * then just drops the sample into a ring buffer owned by the calling thread. A background task calls
+ * {@link #publish()} to drain every buffer, keep the newest value per key, and only send the ones that
+ * moved by more than their deadband. Putting never blocks or allocates (after a thread's first put).
+ * With {@link #setHeadless(boolean)} nothing goes to NetworkTables, for running off the robot.
+ */
+public class Telemetry {
+    private static final int kChannelCapacity = 1024;
+
+    // Registration, guarded by the class lock. The arrays are replaced rather than modified,
+    // so the publisher can keep using a snapshot outside of the lock.
+    private static final List<String> names = new ArrayList<>();
+    private static NetworkTableEntry[] entries = new NetworkTableEntry[0];
+    private static double[] deadbands = new double[0];
+    private static int[] decimations = new int[0];
+    private static boolean headless;
+
+    private static final List<TelemetryChannel> channels = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<TelemetryChannel> channel = ThreadLocal.withInitial(() -> {
+        TelemetryChannel created = new TelemetryChannel(kChannelCapacity);
+        channels.add(created);
+        return created;
+    });
+
+    // Publisher state, only touched by the thread calling publish().
+    private static double[] pending = new double[0];
+    private static boolean[] hasPending = new boolean[0];
+    private static double[] published = new double[0];
+    private static int[] passesSincePublish = new int[0];
+    private static final TelemetryChannel.Sink collect = (key, value) -> {
+        // Keys registered after this pass started are picked up on the next one.
+        if(key < pending.length) {
+            pending[key] = value;
+            hasPending[key] = true;
+        }
+    };
+
+    /**
+     * Keeps keys registered from now on off NetworkTables, so nothing loads its native library.
+     * Samples are still collected and drained by {@link #publish()}. Call before anything registers,
+     * for example from a simulation.
+     * @param enabled Whether to run without NetworkTables.
+     */
+    public static synchronized void setHeadless(boolean enabled) {
+        headless = enabled;
+    }
+
+    /**
+     * Registers a key that is sent whenever it changes.
+     * @param key SmartDashboard key.
+     * @return Handle to pass to {@link #put(int, double)}.
+     */
+    public static int register(String key) {
+        return register(key, 0, 1);
+    }
+
+    /**
+     * Registers a key, or returns the existing handle if it's already registered.
+     * @param key SmartDashboard key.
+     * @param deadband Changes this small or smaller aren't sent.
+     * @param decimation Only send the key every this many publish passes at most.
+     * @return Handle to pass to {@link #put(int, double)}.
+     */
+    public static synchronized int register(String key, double deadband, int decimation) {
+        int handle = names.indexOf(key);
+        if(handle >= 0)
+            return handle;
+
+        handle = names.size();
+        names.add(key);
+        entries = Arrays.copyOf(entries, handle + 1);
+        entries[handle] = headless ? null : SmartDashboard.getEntry(key);
+        deadbands = Arrays.copyOf(deadbands, handle + 1);
+        decimations = Arrays.copyOf(decimations, handle + 1);
+        deadbands[handle] = deadband;
+        decimations[handle] = Math.max(1, decimation);
+        return handle;
+    }
+
+    /**
+     * Queues a sample to be published.
+     * @param key Handle from {@link #register(String)}.
+     * @param value Value to publish.
+     */
+    public static void put(int key, double value) {
+        channel.get().offer(key, value);
+    }
+
+    /**
+     * Queues a boolean sample to be published, as 1 or 0.
+     * @param key Handle from {@link #register(String)}.
+     * @param value Value to publish.
+     */
+    public static void put(int key, boolean value) {
+        channel.get().offer(key, value ? 1 : 0);
+    }
+
+    /**
+     * Drains every channel and sends the changed values to NetworkTables.
+     * Call from one background thread only, for example a {@link RealTimeScheduler} task.
+     */
+    public static void publish() {
+        NetworkTableEntry[] entrySnapshot;
+        double[] deadbandSnapshot;
+        int[] decimationSnapshot;
+        synchronized(Telemetry.class) {
+            entrySnapshot = entries;
+            deadbandSnapshot = deadbands;
+            decimationSnapshot = decimations;
+        }
+        growPublisherState(entrySnapshot.length);
+
+        for(TelemetryChannel c : channels) {
+            c.drain(collect);
+        }
+
+        for(int key = 0; key < entrySnapshot.length; key++) {
+            passesSincePublish[key]++;
+            if(!hasPending[key] || passesSincePublish[key] < decimationSnapshot[key])
+                continue;
+            double value = pending[key];
+            // NaN never equals anything, so the first value always goes out.
+            if(Math.abs(value - published[key]) <= deadbandSnapshot[key])
+                continue;
+
+            if(entrySnapshot[key] != null)
+                entrySnapshot[key].setDouble(value);
+            published[key] = value;
+            hasPending[key] = false;
+            passesSincePublish[key] = 0;
+        }
+    }
+
+    /**
+     * @return Total number of samples dropped because a channel was full.
+     */
+    public static long getDropped() {
+        long dropped = 0;
+        for(TelemetryChannel c : channels) {
+            dropped += c.getDropped();
+        }
+        return dropped;
+    }
+
+    private static void growPublisherState(int size) {
+        if(pending.length >= size)
+            return;
+        int oldSize = pending.length;
+        pending = Arrays.copyOf(pending, size);
+        hasPending = Arrays.copyOf(hasPending, size);
+        published = Arrays.copyOf(published, size);
+        passesSincePublish = Arrays.copyOf(passesSincePublish, size);
+        Arrays.fill(published, oldSize, size, Double.NaN);
+        Arrays.fill(passesSincePublish, oldSize, size, Integer.MAX_VALUE / 2);
+    }
+}
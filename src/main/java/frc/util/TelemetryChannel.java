@@ -0,0 +1,75 @@
+package frc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer, single-consumer ring buffer of (key, value) samples.
+ * The producer never blocks: if the buffer is full the sample is dropped and counted.
+ * Used by {@link Telemetry}, which gives every producing thread a channel of its own.
+ */
+class TelemetryChannel {
+    private final int mask;
+    private final int[] keys;
+    private final double[] values;
+
+    // Next slot to read, only written by the consumer.
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, only written by the producer.
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long dropped;
+
+    /**
+     * @param capacity Number of samples the buffer holds. Rounded up to a power of two.
+     */
+    TelemetryChannel(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        keys = new int[size];
+        values = new double[size];
+    }
+
+    /**
+     * Adds a sample. Only call from the producing thread.
+     * @return {@code false} if the buffer was full and the sample was dropped.
+     */
+    boolean offer(int key, double value) {
+        long t = tail.get();
+        if(t - head.getAcquire() > mask) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        keys[slot] = key;
+        values[slot] = value;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes every sample that is waiting. Only call from the consuming thread.
+     * @param sink Receives the samples in the order they were added.
+     * @return Number of samples taken.
+     */
+    int drain(Sink sink) {
+        long h = head.get();
+        long t = tail.getAcquire();
+        for(long i = h; i < t; i++) {
+            int slot = (int) i & mask;
+            sink.accept(keys[slot], values[slot]);
+        }
+        head.setRelease(t);
+        return (int) (t - h);
+    }
+
+    /**
+     * @return Number of samples dropped because the buffer was full.
+     */
+    long getDropped() {
+        return dropped;
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void accept(int key, double value);
+    }
+}
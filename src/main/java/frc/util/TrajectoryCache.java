@@ -0,0 +1,155 @@
+package frc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import frc.maths.Trajectory;
+import frc.maths.TrajectoryGenerator;
+
+/**
+ * Trajectories generated ahead of time, so the robot doesn't have to generate them on startup.
+ * They are saved at build time into {@code src/main/deploy/trajectories}, which is deployed with the
+ * code. On the robot each file is memory-mapped and the {@link Trajectory} reads its samples straight
+ * out of the mapping. Loading only checks the header, and the OS pages the samples in the first time
+ * they are sampled.
+ *
+ * <p>Every file stores {@link TrajectoryGenerator#getChecksum} of what it was generated from. If that
+ * doesn't match what the robot would generate now, the file is stale. Then an error is printed and the
+ * trajectory is generated on the spot, so a stale file never gets driven.
+ *
+ * <p>File layout: a {@value #kHeaderSize} byte header (magic, version, checksum, sample count), then
+ * {@value #kColumns} columns of doubles: time, x, y, heading, vx, vy, omega. Everything is little
+ * endian, like the roboRIO, so reading a sample is a plain load.
+ */
+public class TrajectoryCache {
+    public static final int kMagic = 0x5452414A; // "TRAJ"
+    public static final int kVersion = 1;
+    public static final int kHeaderSize = 32;
+    public static final int kColumns = 7;
+
+    private final File directory;
+    private final TrajectoryGenerator generator;
+
+    /**
+     * @param directory Directory the trajectory files are in, for example {@code /home/lvuser/deploy/trajectories}.
+     * @param generator Generator to check the files against, and to fall back to when one is stale.
+     */
+    public TrajectoryCache(File directory, TrajectoryGenerator generator) {
+        this.directory = directory;
+        this.generator = generator;
+    }
+
+    /**
+     * Loads a saved trajectory, or generates it if the file is missing or stale.
+     * @param name Name of the trajectory, which is also the file name.
+     * @param x X positions of the waypoints.
+     * @param y Y positions of the waypoints.
+     * @param heading Heading of the robot at each waypoint, in radians.
+     * @return The trajectory.
+     */
+    public Trajectory load(String name, double[] x, double[] y, double[] heading) {
+        File file = getFile(name);
+        try {
+            Trajectory trajectory = read(file, generator.getChecksum(x, y, heading));
+            if(trajectory != null)
+                return trajectory;
+            System.out.println("ERROR: Trajectory " + file + " is stale, generating it instead");
+        } catch(IOException e) {
+            System.out.println("ERROR: Couldn't read trajectory " + file + ": " + e.getMessage() + ", generating it instead");
+        }
+        return generator.generate(x, y, heading);
+    }
+
+    /**
+     * Generates a trajectory and saves it. Meant for build time, see {@code ./gradlew generateTrajectories}.
+     * @param name Name of the trajectory, which is also the file name.
+     * @param x X positions of the waypoints.
+     * @param y Y positions of the waypoints.
+     * @param heading Heading of the robot at each waypoint, in radians.
+     * @return The trajectory that was saved.
+     * @throws IOException If the file couldn't be written.
+     */
+    public Trajectory save(String name, double[] x, double[] y, double[] heading) throws IOException {
+        Trajectory trajectory = generator.generate(x, y, heading);
+        directory.mkdirs();
+        write(getFile(name), trajectory, generator.getChecksum(x, y, heading));
+        return trajectory;
+    }
+
+    /**
+     * @param name Name of the trajectory.
+     * @return File the trajectory is saved in.
+     */
+    public File getFile(String name) {
+        return new File(directory, name + ".traj");
+    }
+
+    /**
+     * Maps a trajectory file.
+     * @param file File to map.
+     * @param checksum Checksum the file has to have been generated with.
+     * @return The trajectory, or {@code null} if the file was generated from something else.
+     * @throws IOException If the file is missing, or isn't a trajectory file of this version.
+     */
+    static Trajectory read(File file, long checksum) throws IOException {
+        MappedByteBuffer buffer;
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the file is closed.
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.capacity() < kHeaderSize || buffer.getInt(0) != kMagic)
+            throw new IOException("not a trajectory file");
+        if(buffer.getInt(4) != kVersion)
+            throw new IOException("version " + buffer.getInt(4) + ", expected " + kVersion);
+        if(buffer.getLong(8) != checksum)
+            return null;
+        int size = buffer.getInt(16);
+        if(size <= 0 || buffer.capacity() != kHeaderSize + (long) kColumns * size * Double.BYTES)
+            throw new IOException("truncated");
+
+        DoubleBuffer[] columns = new DoubleBuffer[kColumns];
+        for(int c = 0; c < kColumns; c++) {
+            int start = kHeaderSize + c * size * Double.BYTES;
+            buffer.limit(start + size * Double.BYTES).position(start);
+            columns[c] = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return new Trajectory(columns[0], columns[1], columns[2], columns[3], columns[4], columns[5], columns[6]);
+    }
+
+    static void write(File file, Trajectory trajectory, long checksum) throws IOException {
+        int size = trajectory.size();
+        ByteBuffer buffer = ByteBuffer.allocate(kHeaderSize + kColumns * size * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(kMagic).putInt(kVersion).putLong(checksum).putInt(size);
+        buffer.position(kHeaderSize);
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getTime(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getX(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getY(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getHeading(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getVx(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getVy(i));
+        for(int i = 0; i < size; i++)
+            buffer.putDouble(trajectory.getOmega(i));
+        buffer.flip();
+
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package frc.util;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * A boolean on the dashboard that can be toggled while the robot is running.
+ * Works the same way as {@link TunableNumber}.
+ * Get instances from {@link TuningRegistry#bool(String, boolean)}.
+ */
+public class TunableBoolean {
+    private final NetworkTableEntry entry;
+    private volatile boolean value;
+
+    // Without an entry it's a plain value, see TuningRegistry.setHeadless().
+    TunableBoolean(NetworkTableEntry entry, boolean defaultValue) {
+        this.entry = entry;
+        if(entry == null) {
+            this.value = defaultValue;
+            return;
+        }
+        entry.setDefaultBoolean(defaultValue);
+        value = entry.getBoolean(defaultValue);
+
+        entry.addListener(notification -> value = notification.value.getBoolean(),
+                EntryListenerFlags.kNew | EntryListenerFlags.kUpdate | EntryListenerFlags.kImmediate | EntryListenerFlags.kLocal);
+    }
+
+    /**
+     * @return Latest value from the dashboard.
+     */
+    public boolean get() {
+        return value;
+    }
+
+    /**
+     * Publishes a new value to the dashboard. The cached value is updated right away.
+     * @param value New value.
+     */
+    public void set(boolean value) {
+        this.value = value;
+        if(entry != null)
+            entry.setBoolean(value);
+    }
+}
@@ -0,0 +1,70 @@
+package frc.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * A number on the dashboard that can be changed while the robot is running.
+ * The NetworkTables entry is resolved once, and a change listener copies new values
+ * into a cached field, so reading it from the control loop is just a field read.
+ * Get instances from {@link TuningRegistry#number(String, double)}.
+ */
+public class TunableNumber {
+    private final NetworkTableEntry entry;
+    private volatile double value;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    // Without an entry it's a plain value, see TuningRegistry.setHeadless().
+    TunableNumber(NetworkTableEntry entry, double defaultValue) {
+        this.entry = entry;
+        if(entry == null) {
+            value = defaultValue;
+            return;
+        }
+        entry.setDefaultDouble(defaultValue);
+        value = entry.getDouble(defaultValue);
+
+        int flags = EntryListenerFlags.kNew | EntryListenerFlags.kUpdate | EntryListenerFlags.kImmediate | EntryListenerFlags.kLocal;
+        entry.addListener(notification -> {
+            value = notification.value.getDouble();
+            for(Runnable listener : listeners) {
+                listener.run();
+            }
+        }, flags);
+    }
+
+    /**
+     * @return Latest value from the dashboard.
+     */
+    public double get() {
+        return value;
+    }
+
+    /**
+     * Runs {@code listener} on the NetworkTables thread every time the value changes, or on the
+     * thread calling {@link #set(double)} when headless.
+     * Keep it short, and don't touch anything the control loop owns from it.
+     * @param listener Called after the new value is cached.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publishes a new value to the dashboard. The cached value is updated right away.
+     * @param value New value.
+     */
+    public void set(double value) {
+        this.value = value;
+        if(entry != null) {
+            entry.setDouble(value);
+            return;
+        }
+        for(Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package frc.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Keeps one {@link TunableNumber} or {@link TunableBoolean} per SmartDashboard key.
+ * Look tunables up once (in a constructor or robotInit) and keep the reference;
+ * asking for the same key twice returns the same instance, so several modules can share a gain.
+ * With {@link #setHeadless(boolean)} tunables are plain values that never touch NetworkTables.
+ */
+public class TuningRegistry {
+    private static final Map<String, TunableNumber> numbers = new HashMap<>();
+    private static final Map<String, TunableBoolean> booleans = new HashMap<>();
+    private static boolean headless;
+
+    /**
+     * Makes tunables created from now on plain values, kept off NetworkTables so nothing loads its
+     * native library. Setting one still runs its listeners. Call before anything looks a tunable up,
+     * for example from a simulation.
+     * @param enabled Whether to run without NetworkTables.
+     */
+    public static synchronized void setHeadless(boolean enabled) {
+        headless = enabled;
+    }
+
+    /**
+     * Gets the tunable number for a SmartDashboard key, creating it if needed.
+     * @param key SmartDashboard key.
+     * @param defaultValue Value to use if the key doesn't exist yet.
+     * @return Tunable number for the key.
+     */
+    public static synchronized TunableNumber number(String key, double defaultValue) {
+        TunableNumber tunable = numbers.get(key);
+        if(tunable == null) {
+            tunable = new TunableNumber(headless ? null : SmartDashboard.getEntry(key), defaultValue);
+            numbers.put(key, tunable);
+        }
+        return tunable;
+    }
+
+    /**
+     * Gets the tunable boolean for a SmartDashboard key, creating it if needed.
+     * @param key SmartDashboard key.
+     * @param defaultValue Value to use if the key doesn't exist yet.
+     * @return Tunable boolean for the key.
+     */
+    public static synchronized TunableBoolean bool(String key, boolean defaultValue) {
+        TunableBoolean tunable = booleans.get(key);
+        if(tunable == null) {
+            tunable = new TunableBoolean(headless ? null : SmartDashboard.getEntry(key), defaultValue);
+            booleans.put(key, tunable);
+        }
+        return tunable;
+    }
+}
@@ -0,0 +1,124 @@
+package frc.maths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link FastMath} against {@link Math} and {@code %} over a sweep of inputs, and fails if any
+ * of them is outside its documented error bound.
+ */
+public class FastMathTest {
+    private static final int kChecks = 1_000_000;
+    private static final double kSinCosBound = 1e-11;
+    private static final double kAtan2Bound = 1e-14;
+
+    // Mostly angles a control loop would see, plus the whole range the reduction is good for.
+    private static double randomAngle(Random random, int i) {
+        return i % 2 == 0 ? (random.nextDouble() - 0.5) * 8 * Math.PI : (random.nextDouble() - 0.5) * 2e4;
+    }
+
+    // Edges where the quadrant changes, and the values right next to them.
+    private static double[] quadrantEdges() {
+        double[] edges = new double[129 * 3];
+        for(int k = -64; k <= 64; k++) {
+            double edge = k * Math.PI / 4;
+            int i = (k + 64) * 3;
+            edges[i] = Math.nextDown(edge);
+            edges[i + 1] = edge;
+            edges[i + 2] = Math.nextUp(edge);
+        }
+        return edges;
+    }
+
+    @Test
+    public void sinAndCosStayWithinTheirBound() {
+        Random random = new Random(1);
+        for(int i = 0; i < kChecks; i++) {
+            double angle = randomAngle(random, i);
+            assertEquals("sin(" + angle + ")", Math.sin(angle), FastMath.sin(angle), kSinCosBound);
+            assertEquals("cos(" + angle + ")", Math.cos(angle), FastMath.cos(angle), kSinCosBound);
+        }
+        for(double angle : quadrantEdges()) {
+            assertEquals("sin(" + angle + ")", Math.sin(angle), FastMath.sin(angle), kSinCosBound);
+            assertEquals("cos(" + angle + ")", Math.cos(angle), FastMath.cos(angle), kSinCosBound);
+        }
+    }
+
+    @Test
+    public void sinAndCosFallBackOutsideTheReducibleRange() {
+        double[] angles = { 1e5, -3e7, 1e300, Double.POSITIVE_INFINITY, Double.NaN };
+        for(double angle : angles) {
+            assertEquals("sin(" + angle + ")", Math.sin(angle), FastMath.sin(angle), 0);
+            assertEquals("cos(" + angle + ")", Math.cos(angle), FastMath.cos(angle), 0);
+        }
+    }
+
+    @Test
+    public void atan2StaysWithinItsBound() {
+        Random random = new Random(1);
+        for(int i = 0; i < kChecks; i++) {
+            double y = random.nextGaussian() * Math.pow(10, random.nextInt(9) - 4);
+            double x = random.nextGaussian() * Math.pow(10, random.nextInt(9) - 4);
+            assertEquals("atan2(" + y + ", " + x + ")", Math.atan2(y, x), FastMath.atan2(y, x), kAtan2Bound);
+        }
+        // Every entry of the atan table, in the first and third quadrant.
+        for(int i = 0; i <= 128; i++) {
+            double y = i / 128.0;
+            assertEquals("atan2(" + y + ", 1)", Math.atan2(y, 1), FastMath.atan2(y, 1), kAtan2Bound);
+            assertEquals("atan2(-1, " + -y + ")", Math.atan2(-1, -y), FastMath.atan2(-1, -y), kAtan2Bound);
+        }
+    }
+
+    @Test
+    public void atan2MatchesMathOnSpecialValues() {
+        double[] special = { 0.0, -0.0, 1, -1, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN };
+        for(double y : special) {
+            for(double x : special) {
+                double exact = Math.atan2(y, x);
+                double fast = FastMath.atan2(y, x);
+                String name = "atan2(" + y + ", " + x + ")";
+                if(y != 0 && x != 0 && !Double.isNaN(exact)) {
+                    assertEquals(name, exact, fast, kAtan2Bound);
+                } else {
+                    // Signed zeros and NaN have to come out exactly the same.
+                    assertEquals(name, Double.doubleToLongBits(exact), Double.doubleToLongBits(fast));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void wrapsMatchRemainder() {
+        Random random = new Random(1);
+        for(int i = 0; i < kChecks; i++) {
+            checkWraps(randomAngle(random, i));
+        }
+        for(double angle : quadrantEdges()) {
+            checkWraps(angle);
+        }
+    }
+
+    private static void checkWraps(double angle) {
+        checkWrap("wrapTwoPi", angle, FastMath.wrapTwoPi(angle), wrapExact(angle, 2 * Math.PI), 2 * Math.PI);
+        checkWrap("wrapPi", angle, FastMath.wrapPi(angle), wrapExact(angle + Math.PI, 2 * Math.PI) - Math.PI, 2 * Math.PI);
+        checkWrap("wrapSymmetric", angle, FastMath.wrapSymmetric(angle, 5), wrapExact(angle + 2.5, 5) - 2.5, 5);
+    }
+
+    private static double wrapExact(double value, double period) {
+        double scaled = value % period;
+        return scaled < 0 ? scaled + period : scaled;
+    }
+
+    private static void checkWrap(String name, double input, double fast, double exact, double period) {
+        String call = name + "(" + input + ") = " + fast;
+        assertTrue(call + " is out of range", fast >= -period / 2 && fast < period);
+        // Right at the edge one of them can wrap and the other not, which is the same angle.
+        double difference = Math.abs(fast - exact);
+        difference = Math.min(difference, Math.abs(difference - period));
+        assertTrue(call + ", expected " + exact, difference <= 4 * Math.ulp(input) + 4 * Math.ulp(period));
+    }
+}
@@ -0,0 +1,73 @@
+package frc.maths;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Feeds {@link LatencyPredictor} readings the way the Spark MAX gives them: positions every 5 ms,
+ * velocities every 10 ms, and each one keeping its time while the reading doesn't change.
+ */
+public class LatencyPredictorTest {
+    private static final long kPositionPeriod = 5000; // us
+    private static final long kVelocityPeriod = 10000; // us
+    private static final long kReadPeriod = 2000; // us
+    private static final long kLatency = 10000; // us
+
+    private final LatencyPredictor predictor = new LatencyPredictor(50000, 2 * kVelocityPeriod);
+    private double lastPosition = Double.NaN, lastVelocity = Double.NaN;
+    private long positionTime, velocityTime;
+
+    // Motion that ramps from speed to rest at a constant deceleration, in rotations and seconds.
+    private static final double kSpeed = 0.8;
+    private static final double kStopTime = 0.1;
+
+    private static double position(double t) {
+        t = Math.min(t, kStopTime);
+        return kSpeed * t - kSpeed / kStopTime * t * t / 2;
+    }
+
+    private static double velocity(double t) {
+        return Math.max(0, kSpeed * (1 - t / kStopTime));
+    }
+
+    private void read(long now) {
+        // The latest frame of each kind, stamped only when its reading changed.
+        long positionFrame = now / kPositionPeriod * kPositionPeriod;
+        long velocityFrame = now / kVelocityPeriod * kVelocityPeriod;
+        double position = position(positionFrame * 1e-6);
+        double velocity = velocity(velocityFrame * 1e-6);
+        if(position != lastPosition) {
+            lastPosition = position;
+            positionTime = positionFrame;
+        }
+        if(velocity != lastVelocity) {
+            lastVelocity = velocity;
+            velocityTime = velocityFrame;
+        }
+        predictor.update(lastPosition, positionTime, lastVelocity, velocityTime);
+    }
+
+    @Test
+    public void followsConstantDeceleration() {
+        for(long now = 0; now < 80000; now += kReadPeriod) {
+            read(now);
+            if(now >= 2 * kVelocityPeriod) {
+                double expected = position((now + kLatency) * 1e-6);
+                assertEquals("at " + now + " us", expected, predictor.predictPosition(now, now + kLatency), 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void stoppedModuleIsPredictedWhereItIs() {
+        for(long now = 0; now < 1000000; now += kReadPeriod) {
+            read(now);
+            if(now >= 200000) {
+                String name = "at " + now + " us";
+                assertEquals(name, position(kStopTime), predictor.predictPosition(now, now + kLatency), 1e-12);
+                assertEquals(name, 0, predictor.predictVelocity(now, now + kLatency), 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package frc.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import frc.maths.FastMath;
+import frc.subsystems.DrivetrainHealthMonitor;
+
+/**
+ * Runs every scenario of {@link SimHarness} against its limits, so a change that slows the steering
+ * down, overloads the bus or breaks the health monitor fails the build.
+ */
+public class SimHarnessTest {
+    // Faults go in once the modules are turning.
+    private static final double kFaultTime = 1; // s
+    // Every fault is checked at 10 Hz and none needs more than 0.5 s to show.
+    private static final double kMaxDetectionTime = 0.7; // s
+
+    @BeforeClass
+    public static void setUp() {
+        // Same as the robot.
+        FastMath.setEnabled(true);
+    }
+
+    @Test
+    public void scenariosMeetTheirLimits() {
+        SimHarness harness = new SimHarness();
+        for(Scenario scenario : SimHarness.kScenarios) {
+            SimHarness.Result result = harness.run(scenario);
+            assertTrue(result.toString(), result.passed());
+        }
+    }
+
+    @Test
+    public void busLoadFitsTheBudget() {
+        SimHarness harness = new SimHarness();
+        for(Scenario scenario : SimHarness.kScenarios) {
+            SimHarness.Result result = harness.run(scenario);
+            assertTrue(scenario.name + " took " + result.busLoad + " of the bus", result.busLoad <= SimHarness.kMaxBusLoad);
+        }
+    }
+
+    @Test
+    public void reusedHarnessGivesTheSameRuns() {
+        SimHarness reused = new SimHarness();
+        for(Scenario scenario : SimHarness.kScenarios) {
+            // The reused harness has just run the scenario before this one.
+            SimHarness.Result fresh = new SimHarness().run(scenario);
+            SimHarness.Result again = reused.run(scenario);
+            assertEquals(scenario.name, fresh.checksum, again.checksum);
+        }
+    }
+
+    @Test
+    public void nominalRunsStayHealthy() {
+        SimHarness harness = new SimHarness();
+        for(Scenario scenario : SimHarness.kScenarios) {
+            SimHarness.Result result = harness.run(scenario);
+            for(int status : result.health) {
+                assertEquals(scenario.name + ": " + DrivetrainHealthMonitor.describe(status), 0, status);
+            }
+            assertTrue(scenario.name + " was unhealthy at " + result.unhealthyTime + " s", Double.isNaN(result.unhealthyTime));
+        }
+    }
+
+    @Test
+    public void faultsAreDetected() {
+        SimHarness harness = new SimHarness();
+        for(SimVariant.Fault fault : SimVariant.Fault.values()) {
+            SimHarness.Result result = harness.run(SimHarness.kScenarios[0],
+                    SimVariant.kNominal.withFault(fault, 0, kFaultTime));
+            int status = result.health[0];
+            assertTrue(fault + " gave " + DrivetrainHealthMonitor.describe(status), (status & fault.healthFlag) != 0);
+            double delay = result.unhealthyTime - kFaultTime;
+            assertTrue(fault + " took " + delay + " s to detect", delay >= 0 && delay <= kMaxDetectionTime);
+        }
+    }
+}